@@ -4,8 +4,21 @@
 // index pairs through duplicate avoidance with a HashSet to grow its size.
 //  The method continues its operations until it discovers and returns the 
 //  k-th smallest product in an efficient manner.
+// For very large k (up to n*m) a counting engine binary-searches the product value
+// instead, counting the pairs whose product is at most the candidate value with
+// two pointers per sign segment, so it needs no heap and uses long products.
+// The ProductFrontier class is an allocation-free heap mode: it merges the sorted rows of
+// products with a primitive heap keyed by the cached product and a packed index pair.
+// It doubles as a lazy ascending iterator (and Spliterator) over all products with their
+// index pairs, which can be paged and suspended into a cursor to resume later.
+// ProductRankQuery preprocesses the two arrays once and answers batches of ranks, reusing
+// each answer as a search bound for its neighbours and optionally running on a ForkJoinPool.
 
 import java.util.*; // Importing necessary libraries for PriorityQueue and HashSet
+import java.util.concurrent.ForkJoinPool; // Pool for answering batches of ranks in parallel
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.LongStream; // Stream view over the products in ascending order
+import java.util.stream.StreamSupport;
 
 class Qn1b { // Class definition
 
@@ -47,15 +60,474 @@ class Qn1b { // Class definition
         return -1; // This line should never be reached
     }
 
+    // Counting engine: finds the k-th smallest product (1 <= k <= n*m) by binary searching the
+    // product value. Works for arrays mixing negative, zero and positive values, runs in
+    // O((n + m) log V) time where V is the product range, and uses O(1) extra memory.
+    public static long kthSmallestProductCounting(int[] returns1, int[] returns2, long k) {
+        int n = returns1.length, m = returns2.length;
+        if (k < 1 || k > (long) n * m) // The rank must address an existing pair
+            throw new IllegalArgumentException("k must be between 1 and " + ((long) n * m) + ": " + k);
+
+        int negEnd = firstIndexAtLeast(returns1, 0); // returns1[0, negEnd) holds the negative values
+        int zeroEnd = firstIndexAtLeast(returns1, 1); // returns1[negEnd, zeroEnd) holds the zeros
+
+        // Every product lies between the smallest and largest of the four corner products
+        long a0 = returns1[0], a1 = returns1[n - 1], b0 = returns2[0], b1 = returns2[m - 1];
+        long lo = Math.min(Math.min(a0 * b0, a0 * b1), Math.min(a1 * b0, a1 * b1));
+        long hi = Math.max(Math.max(a0 * b0, a0 * b1), Math.max(a1 * b0, a1 * b1));
+
+        // Find the smallest value whose count of products at or below it reaches k
+        while (lo < hi) {
+            long mid = (lo + hi) >> 1; // Floor of the midpoint; lo + hi cannot overflow for int products
+            if (countPairsAtMost(returns1, negEnd, zeroEnd, returns2, mid) >= k)
+                hi = mid; // The k-th product is at most mid
+            else
+                lo = mid + 1; // Fewer than k products are at most mid
+        }
+        return lo;
+    }
+
+    // Counts the pairs (i, j) with returns1[i] * returns2[j] <= limit. The negative, zero and
+    // positive segments of returns1 are handled separately; each segment is walked in the order
+    // that keeps its pointer into returns2 moving in one direction, so every segment is linear.
+    static long countPairsAtMost(int[] returns1, int negEnd, int zeroEnd, int[] returns2, long limit) {
+        int m = returns2.length;
+        long count = 0;
+
+        // Positive a: a * returns2[j] grows with j, so the matching pairs are a prefix of returns2.
+        // The prefix shrinks as a grows when limit >= 0 and as a shrinks when limit < 0.
+        int p = m;
+        if (limit >= 0) {
+            for (int i = zeroEnd; i < returns1.length; i++) {
+                long a = returns1[i];
+                while (p > 0 && a * returns2[p - 1] > limit)
+                    p--; // Drop columns whose product now exceeds the limit
+                count += p;
+            }
+        } else {
+            for (int i = returns1.length - 1; i >= zeroEnd; i--) {
+                long a = returns1[i];
+                while (p > 0 && a * returns2[p - 1] > limit)
+                    p--;
+                count += p;
+            }
+        }
+
+        // Negative a: a * returns2[j] shrinks as j grows, so the matching pairs are a suffix of
+        // returns2. The suffix shrinks as a moves away from zero when limit >= 0 and towards it otherwise.
+        int q = 0;
+        if (limit >= 0) {
+            for (int i = negEnd - 1; i >= 0; i--) {
+                long a = returns1[i];
+                while (q < m && a * returns2[q] > limit)
+                    q++; // Skip columns whose product exceeds the limit
+                count += m - q;
+            }
+        } else {
+            for (int i = 0; i < negEnd; i++) {
+                long a = returns1[i];
+                while (q < m && a * returns2[q] > limit)
+                    q++;
+                count += m - q;
+            }
+        }
+
+        // Zero a: every product is zero, so the whole row counts when the limit is not negative
+        if (limit >= 0)
+            count += (long) (zeroEnd - negEnd) * m;
+        return count;
+    }
+
+    // Frontier engine: pops products in ascending order from a primitive row-frontier heap.
+    // Correct for any mix of signs and performs no allocation per pop; O(n + k log n) time.
+    public static long kthSmallestProductFrontier(int[] returns1, int[] returns2, long k) {
+        if (k < 1 || k > (long) returns1.length * returns2.length) // The rank must address an existing pair
+            throw new IllegalArgumentException("k must be between 1 and "
+                    + ((long) returns1.length * returns2.length) + ": " + k);
+        ProductFrontier frontier = new ProductFrontier(returns1, returns2);
+        long product = 0;
+        for (long count = 0; count < k; count++)
+            product = frontier.nextLong(); // Skip past the k - 1 smaller products
+        return product;
+    }
+
+    // Returns the first index of the sorted array whose value is at least target
+    static int firstIndexAtLeast(int[] values, int target) {
+        int lo = 0, hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < target)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Times the heap, frontier and counting engines on non-negative arrays, where all three agree.
+    // Run with: java Qn1b --bench [n] [k]
+    static void benchmark(int n, long k) {
+        Random random = new Random(42);
+        int[] returns1 = new int[n], returns2 = new int[n];
+        for (int i = 0; i < n; i++) {
+            returns1[i] = random.nextInt(1000); // Small values keep the int heap version from overflowing
+            returns2[i] = random.nextInt(1000);
+        }
+        Arrays.sort(returns1);
+        Arrays.sort(returns2);
+
+        for (int round = 0; round < 5; round++) { // Later rounds show the settled cost of all three engines
+            long start = System.nanoTime();
+            long heap = kthSmallestProduct(returns1, returns2, (int) k);
+            long heapTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long frontier = kthSmallestProductFrontier(returns1, returns2, k);
+            long frontierTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long counting = kthSmallestProductCounting(returns1, returns2, k);
+            long countingTime = System.nanoTime() - start;
+
+            System.out.printf("round %d: heap %d (%.1f ms), frontier %d (%.1f ms), counting %d (%.1f ms)%n",
+                    round, heap, heapTime / 1e6, frontier, frontierTime / 1e6, counting, countingTime / 1e6);
+        }
+    }
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) { // Time the kth-product engines instead of the examples
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 2000,
+                    args.length > 2 ? Long.parseLong(args[2]) : 200000);
+            return;
+        }
+
         int[] returns1 = { -4, -2, 0, 3 }; // First sorted array
         int[] returns2 = { 2, 4 }; // Second sorted array
         int k = 6; // Find the 6th smallest product
 
         // Call the function and print the result
         System.out.println(kthSmallestProduct(returns1, returns2, k));
+
+        // The counting engine answers the same query and also accepts ranks up to n*m
+        System.out.println(kthSmallestProductCounting(returns1, returns2, k));
+        System.out.println(kthSmallestProductCounting(returns1, returns2, 8));
+
+        // The frontier engine produces the same ranks by popping products in order
+        System.out.println(kthSmallestProductFrontier(returns1, returns2, k));
+
+        // Answer several ranks against the same arrays in one batch
+        ProductRankQuery query = new ProductRankQuery(returns1, returns2);
+        System.out.println(Arrays.toString(query.kthAll(new long[] { 8, 1, 6, 4 })));
+        System.out.println(Arrays.toString(query.kthAll(new long[] { 8, 1, 6, 4 }, ForkJoinPool.commonPool())));
+
+        // Page through the products three at a time, suspending and resuming between pages
+        long[] products = new long[3];
+        int[] index1 = new int[3], index2 = new int[3];
+        ProductFrontier.Cursor cursor = null;
+        while (true) {
+            ProductFrontier frontier = cursor == null ? new ProductFrontier(returns1, returns2)
+                    : new ProductFrontier(returns1, returns2, cursor); // Resume where the last page stopped
+            int count = frontier.nextPage(products, index1, index2, products.length);
+            if (count == 0)
+                break;
+            StringBuilder page = new StringBuilder("Page:");
+            for (int i = 0; i < count; i++)
+                page.append(' ').append(products[i]).append(" (").append(index1[i]).append(',').append(index2[i]).append(')');
+            System.out.println(page);
+            cursor = frontier.cursor();
+        }
+    }
+}
+
+// Batched rank queries over two fixed sorted arrays. The sign split of returns1 and the bounds
+// of the product range are computed once. A batch is answered by sorting the ranks and
+// solving the middle rank first: its answer bounds the binary search of every smaller rank
+// from above and every larger rank from below, so later searches cover narrower ranges.
+// The two halves are independent and can run as ForkJoin tasks.
+class ProductRankQuery {
+    private final int[] returns1, returns2;
+    private final int negEnd, zeroEnd; // Sign split of returns1, as used by the counting engine
+    private final long minProduct, maxProduct; // Bounds of every product
+    private final long pairCount; // Total number of pairs, the largest valid rank
+
+    ProductRankQuery(int[] returns1, int[] returns2) {
+        if (returns1.length == 0 || returns2.length == 0)
+            throw new IllegalArgumentException("both arrays must be non-empty");
+        this.returns1 = returns1;
+        this.returns2 = returns2;
+        negEnd = Qn1b.firstIndexAtLeast(returns1, 0);
+        zeroEnd = Qn1b.firstIndexAtLeast(returns1, 1);
+        long a0 = returns1[0], a1 = returns1[returns1.length - 1];
+        long b0 = returns2[0], b1 = returns2[returns2.length - 1];
+        minProduct = Math.min(Math.min(a0 * b0, a0 * b1), Math.min(a1 * b0, a1 * b1));
+        maxProduct = Math.max(Math.max(a0 * b0, a0 * b1), Math.max(a1 * b0, a1 * b1));
+        pairCount = (long) returns1.length * returns2.length;
+    }
+
+    // Returns the k-th smallest product
+    long kth(long k) {
+        checkRank(k);
+        return search(k, minProduct, maxProduct);
+    }
+
+    // Answers every rank in ks on the calling thread; the result is in the order of ks
+    long[] kthAll(long[] ks) {
+        return kthAll(ks, null);
+    }
+
+    // Answers every rank in ks, splitting the work across the pool when one is given
+    long[] kthAll(long[] ks, ForkJoinPool pool) {
+        for (long k : ks)
+            checkRank(k);
+        long[] sorted = ks.clone();
+        Arrays.sort(sorted);
+        long[] answers = new long[sorted.length];
+        RankTask task = new RankTask(sorted, answers, 0, sorted.length, minProduct, maxProduct, pool != null);
+        if (pool != null)
+            pool.invoke(task);
+        else
+            task.compute(); // Same recursion, run inline
+
+        long[] result = new long[ks.length];
+        for (int i = 0; i < ks.length; i++)
+            result[i] = answers[Arrays.binarySearch(sorted, ks[i])]; // Equal ranks share one answer
+        return result;
+    }
+
+    // Smallest value in [lo, hi] with at least k products at or below it
+    private long search(long k, long lo, long hi) {
+        while (lo < hi) {
+            long mid = (lo + hi) >> 1;
+            if (Qn1b.countPairsAtMost(returns1, negEnd, zeroEnd, returns2, mid) >= k)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private void checkRank(long k) {
+        if (k < 1 || k > pairCount)
+            throw new IllegalArgumentException("k must be between 1 and " + pairCount + ": " + k);
+    }
+
+    // Answers sorted[from, to) knowing every answer lies in [lo, hi]
+    private final class RankTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long[] sorted, answers;
+        private final int from, to;
+        private final long lo, hi;
+        private final boolean parallel; // Fork the halves instead of running them inline
+
+        RankTask(long[] sorted, long[] answers, int from, int to, long lo, long hi, boolean parallel) {
+            this.sorted = sorted;
+            this.answers = answers;
+            this.from = from;
+            this.to = to;
+            this.lo = lo;
+            this.hi = hi;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            if (from >= to)
+                return;
+            int mid = (from + to) >>> 1;
+            long answer = search(sorted[mid], lo, hi);
+            answers[mid] = answer;
+            RankTask left = new RankTask(sorted, answers, from, mid, lo, answer, parallel); // Smaller ranks
+            RankTask right = new RankTask(sorted, answers, mid + 1, to, answer, hi, parallel); // Larger ranks
+            if (parallel && to - from > 1) {
+                invokeAll(left, right); // Solve both halves in parallel
+            } else {
+                left.compute();
+                right.compute();
+            }
+        }
+    }
+}
+
+// Row-frontier heap over the products of two sorted arrays. Each row fixes one value of the
+// shorter array; the row's products are sorted ascending when walked forward for a
+// non-negative row value and backward for a negative one, so the heap only ever holds one
+// cursor per row and no visited set is needed. Heap entries live in two parallel long arrays:
+// the cached product (the key) and the row and column packed into one long.
+// The frontier is a lazy iterator: consumers pull one product at a time, fill pages with the
+// matching index pairs, or take a Cursor snapshot and rebuild the frontier from it later.
+class ProductFrontier implements PrimitiveIterator.OfLong {
+    private final int[] rows, cols; // Row values (shorter array) and column values (longer array)
+    private final boolean transposed; // True when rows come from returns2
+    private final long[] keys; // Cached product of every heap entry
+    private final long[] cells; // Row index in the high 32 bits, column index in the low 32 bits
+    private int size; // Number of live heap entries
+    private int lastRow = -1, lastCol = -1; // Cell of the most recently popped product
+    private long position; // Number of products returned so far
+
+    ProductFrontier(int[] returns1, int[] returns2) {
+        this(returns1, returns2, null);
+    }
+
+    // Rebuilds a frontier from a cursor taken on the same two arrays; a null cursor starts fresh
+    ProductFrontier(int[] returns1, int[] returns2, Cursor cursor) {
+        transposed = returns2.length < returns1.length; // Keep the heap as small as possible
+        rows = transposed ? returns2 : returns1;
+        cols = transposed ? returns1 : returns2;
+        keys = new long[rows.length];
+        cells = new long[rows.length];
+        if (cursor != null && cursor.nextCols.length != rows.length)
+            throw new IllegalArgumentException("cursor was taken on arrays of a different size");
+        if (cols.length == 0)
+            return; // No products at all
+        for (int r = 0; r < rows.length; r++) {
+            // Start each row at its smallest product, or where the cursor left it
+            int c = cursor != null ? cursor.nextCols[r] : rows[r] >= 0 ? 0 : cols.length - 1;
+            if (c < 0)
+                continue; // The row was exhausted before the cursor was taken
+            keys[size] = (long) rows[r] * cols[c];
+            cells[size++] = pack(r, c);
+        }
+        if (cursor != null)
+            position = cursor.position;
+        for (int i = (size >>> 1) - 1; i >= 0; i--)
+            siftDown(i); // Bottom-up heapify in O(n)
+    }
+
+    // Returns true while there are products left to pop
+    @Override
+    public boolean hasNext() {
+        return size > 0;
+    }
+
+    // Removes and returns the smallest remaining product
+    @Override
+    public long nextLong() {
+        if (size == 0)
+            throw new NoSuchElementException("all products have been returned");
+        long product = keys[0];
+        int r = (int) (cells[0] >>> 32), c = (int) cells[0];
+        lastRow = r;
+        lastCol = c;
+
+        int next = rows[r] >= 0 ? c + 1 : c - 1; // Advance the row cursor in its ascending direction
+        if (next >= 0 && next < cols.length) {
+            keys[0] = (long) rows[r] * cols[next]; // Replace the top with the row's next product
+            cells[0] = pack(r, next);
+        } else {
+            size--; // Row exhausted: move the last entry to the top
+            keys[0] = keys[size];
+            cells[0] = cells[size];
+        }
+        if (size > 0)
+            siftDown(0);
+        position++;
+        return product;
+    }
+
+    // Pops up to max products into the page arrays together with their index pairs and
+    // returns how many were written; 0 means every product has been returned
+    int nextPage(long[] products, int[] index1, int[] index2, int max) {
+        int count = 0;
+        while (count < max && size > 0) {
+            products[count] = nextLong();
+            index1[count] = lastIndex1();
+            index2[count] = lastIndex2();
+            count++;
+        }
+        return count;
+    }
+
+    // Number of products returned so far
+    long position() {
+        return position;
+    }
+
+    // Number of products not yet returned
+    long remaining() {
+        return (long) rows.length * cols.length - position;
+    }
+
+    // Spliterator over the remaining products in ascending order
+    Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(this, remaining(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL);
+    }
+
+    // Sequential stream over the remaining products in ascending order
+    LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    // Snapshot of the frontier that can be stored and later passed back to the constructor
+    Cursor cursor() {
+        int[] nextCols = new int[rows.length];
+        Arrays.fill(nextCols, -1); // Rows without a heap entry are exhausted
+        for (int i = 0; i < size; i++)
+            nextCols[(int) (cells[i] >>> 32)] = (int) cells[i];
+        return new Cursor(nextCols, position);
+    }
+
+    // Index into returns1 of the most recently popped product
+    int lastIndex1() {
+        return transposed ? lastCol : lastRow;
+    }
+
+    // Index into returns2 of the most recently popped product
+    int lastIndex2() {
+        return transposed ? lastRow : lastCol;
+    }
+
+    // Restores the heap order below position i
+    private void siftDown(int i) {
+        long key = keys[i], cell = cells[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && less(keys[child + 1], cells[child + 1], keys[child], cells[child]))
+                child++; // Pick the smaller child
+            if (!less(keys[child], cells[child], key, cell))
+                break;
+            keys[i] = keys[child];
+            cells[i] = cells[child];
+            i = child;
+        }
+        keys[i] = key;
+        cells[i] = cell;
+    }
+
+    // Orders entries by product, then by cell so that equal products pop in a fixed order
+    private static boolean less(long keyA, long cellA, long keyB, long cellB) {
+        return keyA < keyB || (keyA == keyB && cellA < cellB);
+    }
+
+    private static long pack(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    // Immutable resume point: the next column of every row (-1 once the row is exhausted)
+    // and the number of products already returned
+    static final class Cursor {
+        private final int[] nextCols;
+        private final long position;
+
+        private Cursor(int[] nextCols, long position) {
+            this.nextCols = nextCols;
+            this.position = position;
+        }
+
+        long position() {
+            return position;
+        }
     }
 }
 
 // Output
-// 0
\ No newline at end of file
+// 0
+// 0
+// 12
+// 0
+// [12, -16, 0, -4]
+// [12, -16, 0, -4]
+// Page: -16 (0,1) -8 (0,0) -8 (1,1)
+// Page: -4 (1,0) 0 (2,0) 0 (2,1)
+// Page: 6 (3,0) 12 (3,1)
\ No newline at end of file
@@ -2,6 +2,22 @@
 // When there is one sample across two temperature settings, the process requires two measurements.
 // For two samples covering six temperature levels, three measurement sets are needed.
 // The program concludes that four measurements are necessary to efficiently identify the highest safe temperature when using three samples and fourteen temperature settings.
+// For very large setting counts a rolling one-dimensional long table keeps only the live column,
+// and a binomial mode binary-searches the measurement count using the closed form
+// coverage(m, k) = C(m,1) + ... + C(m,k), which runs in O(k log n) time and O(1) memory.
+// The CoverageIndex class caches the cumulative coverage per move count for each sample count,
+// so repeated lookups are a binary search over a shared, immutable long[] table.
+// MeasurementPlan turns the same recurrence into the adaptive test campaign itself: it names
+// the next setting to test in O(1) and can export the whole decision tree in a compact form.
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 public class Q1aCriticalTemperature {
 
     // Function that computes the fewest measurements needed to identify the highest safe temperature.
@@ -27,14 +43,385 @@ public class Q1aCriticalTemperature {
         return moves; // Return the minimal count of measurements required.
     }
 
-    public static void main(String[] args) {
+    // Same recurrence as minMeasurements, but only the current column is kept and the counts are
+    // long values that saturate at n, so n may be as large as Long.MAX_VALUE. Time is O(k * moves).
+    public static long minMeasurementsRolling(int k, long n) {
+        checkArguments(k, n);
+        // When only one sample is available, each temperature must be checked one by one.
+        if (k == 1)
+            return n;
+        k = Math.min(k, 63); // With 63 samples every move already doubles the coverage up to Long.MAX_VALUE
+        long[] covered = new long[k + 1]; // covered[i]: settings resolvable with i samples and the moves so far
+        long moves = 0;
+        while (covered[k] < n) {
+            moves++;
+            // Walk the samples downwards so covered[i - 1] still holds the previous move's value
+            for (int i = k; i >= 1; i--) {
+                long next = 1 + covered[i - 1] + covered[i];
+                covered[i] = next < 0 || next > n ? n : next; // Saturate instead of overflowing
+            }
+        }
+        return moves;
+    }
+
+    // Binary-searches the smallest move count m whose coverage C(m,1) + ... + C(m,k) reaches n.
+    // Each coverage evaluation is O(k) and stops as soon as the sum reaches n.
+    public static long minMeasurementsBinomial(int k, long n) {
+        checkArguments(k, n);
+        long lo = 0, hi = n; // n moves always suffice, even with a single sample
+        while (lo < hi) {
+            long mid = lo + (hi - lo) / 2;
+            if (coverage(mid, k, n) >= n)
+                hi = mid; // mid moves are enough
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
+    // Number of settings resolvable with the given moves and samples, saturated at limit
+    static long coverage(long moves, int samples, long limit) {
+        long total = 0, term = 1; // term holds C(moves, i - 1)
+        for (int i = 1; i <= samples && i <= moves; i++) {
+            // C(m, i) = C(m, i - 1) * (m - i + 1) / i; dividing out the gcd first keeps it exact
+            long g = gcd(term, i);
+            long factor = (moves - i + 1) / (i / g); // i / g always divides m - i + 1 here
+            term /= g;
+            if (term > limit / factor)
+                return limit; // The term alone already covers the limit
+            term *= factor;
+            if (term >= limit - total)
+                return limit; // Adding the term reaches the limit (checked without overflowing)
+            total += term;
+        }
+        return total;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static void checkArguments(int k, long n) {
+        if (k < 1)
+            throw new IllegalArgumentException("at least one sample is required: " + k);
+        if (n < 0)
+            throw new IllegalArgumentException("number of settings must not be negative: " + n);
+    }
+
+    public static void main(String[] args) throws IOException {
         // Execute test cases to validate the function
         System.out.println(minMeasurements(1, 2));  // Expected output: 2
         System.out.println(minMeasurements(2, 6));  // Expected output: 3
         System.out.println(minMeasurements(3, 14)); // Expected output: 4
+
+        // The long-valued solvers agree and scale to far larger setting counts
+        System.out.println(minMeasurementsRolling(3, 14));  // Expected output: 4
+        System.out.println(minMeasurementsBinomial(3, 14)); // Expected output: 4
+        System.out.println(minMeasurementsRolling(2, 100_000_000L));  // Expected output: 14142
+        System.out.println(minMeasurementsBinomial(5, Long.MAX_VALUE)); // Expected output: 16175
+
+        // A shared index answers repeated lookups without rebuilding any table
+        CoverageIndex index = new CoverageIndex(8, 1_000_000_000L);
+        System.out.println(index.minMeasurements(2, 6));             // Expected output: 3
+        System.out.println(index.minMeasurements(3, 14));            // Expected output: 4
+        System.out.println(index.minMeasurements(2, 100_000_000L));  // Expected output: 14142
+
+        // Run the adaptive plan for 2 samples over 100 settings when the critical setting is 73
+        MeasurementPlan plan = new MeasurementPlan(index, 2, 100);
+        StringBuilder tested = new StringBuilder("Tested settings:");
+        while (!plan.isResolved()) {
+            long setting = plan.nextSetting();
+            tested.append(' ').append(setting);
+            plan.record(setting > 73); // A sample fails above the critical setting
+        }
+        System.out.println(tested + " -> critical setting " + plan.criticalSetting());
+
+        // The exported decision tree decodes back to the same campaign
+        System.out.println("Exported tree matches the plan: " + checkExport(index, 2, 100));
+        System.out.println("Exported tree matches the plan: " + checkExport(index, 4, 1000));
+    }
+
+    // Exports the decision tree, decodes it and follows it for every possible critical setting,
+    // checking each tested setting against a live MeasurementPlan and each leaf against the answer
+    static boolean checkExport(CoverageIndex index, int samples, long settings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MeasurementPlan.export(index, samples, settings, bytes);
+        InputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        if (readVarLong(in) != samples || readVarLong(in) != settings)
+            return false;
+        long[] codes = new long[bytes.size()]; // Preorder node codes; never more than one per byte
+        int count = 0;
+        while (in.available() > 0)
+            codes[count++] = readVarLong(in);
+        int[] ends = new int[count]; // ends[i]: index just past the subtree rooted at node i
+        if (markSubtree(codes, 0, ends) != count)
+            return false;
+
+        for (long critical = 0; critical <= settings; critical++) {
+            MeasurementPlan plan = new MeasurementPlan(index, samples, settings);
+            int node = 0;
+            long lo = 0;
+            while (codes[node] != 0) {
+                long setting = lo + codes[node];
+                if (plan.isResolved() || plan.nextSetting() != setting)
+                    return false;
+                boolean broke = setting > critical;
+                plan.record(broke);
+                if (broke) {
+                    node++; // The "broke" subtree follows its parent directly
+                } else {
+                    lo = setting;
+                    node = ends[node + 1]; // Skip the "broke" subtree
+                }
+            }
+            if (!plan.isResolved() || plan.criticalSetting() != critical || lo != critical)
+                return false;
+        }
+        return true;
+    }
+
+    // Records where the subtree at node ends and returns that index; recursion depth is the tree
+    // height, which is at most the number of measurements
+    private static int markSubtree(long[] codes, int node, int[] ends) {
+        ends[node] = codes[node] == 0 ? node + 1 : markSubtree(codes, markSubtree(codes, node + 1, ends), ends);
+        return ends[node];
+    }
+
+    // Reads one unsigned LEB128 value as written by MeasurementPlan.export
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new IOException("truncated varint");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
     }
 }
 // Expected output:
 // 2
 // 3
 // 4
+// 4
+// 4
+// 14142
+// 16175
+// 3
+// 4
+// 14142
+// Tested settings: 14 27 39 50 60 69 77 70 71 72 73 74 -> critical setting 73
+// Exported tree matches the plan: true
+// Exported tree matches the plan: true
+
+// Immutable, thread-safe cache of the coverage recurrence
+// coverage(m, k) = 1 + coverage(m - 1, k - 1) + coverage(m - 1, k),
+// i.e. how many settings k samples and m measurements can resolve. For each sample count up to
+// maxSamples the index stores coverage(0..M, k) as a long[] that stops at the first entry
+// reaching maxSettings; the table is strictly increasing, so a lookup is one binary search with
+// no allocation. Tables are built on first use and published through an AtomicReferenceArray;
+// two threads may race to build the same table, but they build identical arrays and only one is kept.
+// A sample count whose table would exceed MAX_TABLE_LENGTH entries (two samples with a huge
+// maxSettings) is answered with the closed-form binomial search instead.
+class CoverageIndex {
+    private static final int MAX_TABLE_LENGTH = 1 << 24; // At most 128 MB per sample count
+    private static final long[] TOO_LARGE = new long[0]; // Marks sample counts served by the closed form
+
+    private final int maxSamples; // Largest sample count the index answers for
+    private final long maxSettings; // Largest setting count the index answers for
+    private final AtomicReferenceArray<long[]> tables; // tables[k]: coverage per move count with k samples
+
+    CoverageIndex(int maxSamples, long maxSettings) {
+        if (maxSamples < 1 || maxSettings < 0)
+            throw new IllegalArgumentException("invalid index bounds: " + maxSamples + ", " + maxSettings);
+        this.maxSamples = maxSamples;
+        this.maxSettings = maxSettings;
+        this.tables = new AtomicReferenceArray<>(maxSamples + 1);
+    }
+
+    // Fewest measurements that find the critical setting among the given settings
+    long minMeasurements(int samples, long settings) {
+        if (samples < 1 || samples > maxSamples)
+            throw new IllegalArgumentException("samples must be between 1 and " + maxSamples + ": " + samples);
+        if (settings < 0 || settings > maxSettings)
+            throw new IllegalArgumentException("settings must be between 0 and " + maxSettings + ": " + settings);
+        if (samples == 1)
+            return settings; // One sample: test every setting in turn
+        long[] table = table(samples);
+        if (table == TOO_LARGE)
+            return Q1aCriticalTemperature.minMeasurementsBinomial(samples, settings);
+        int found = Arrays.binarySearch(table, settings);
+        return found >= 0 ? found : -found - 1; // First move count whose coverage reaches settings
+    }
+
+    // Settings resolvable with the given samples and moves, saturated at maxSettings
+    long coverage(int samples, long moves) {
+        if (samples > maxSamples)
+            throw new IllegalArgumentException("samples must be at most " + maxSamples + ": " + samples);
+        if (samples <= 0 || moves <= 0)
+            return 0;
+        if (samples == 1)
+            return Math.min(moves, maxSettings);
+        long[] table = table(samples);
+        if (table == TOO_LARGE)
+            return Q1aCriticalTemperature.coverage(moves, samples, maxSettings);
+        return moves < table.length ? table[(int) moves] : maxSettings;
+    }
+
+    long maxSettings() {
+        return maxSettings;
+    }
+
+    // Returns the table for the sample count, building it on first use
+    private long[] table(int samples) {
+        long[] table = tables.get(samples);
+        if (table == null) {
+            tables.compareAndSet(samples, null, build(samples)); // Keep whichever copy was published first
+            table = tables.get(samples);
+        }
+        return table;
+    }
+
+    // Builds coverage(0..M, samples) with the recurrence, where M is the move count that first
+    // covers maxSettings; the closed form gives M up front, so oversized tables are never started.
+    // The column for samples - 1 comes from its table when that one has already been built, and
+    // from the closed form otherwise.
+    private long[] build(int samples) {
+        long length = Q1aCriticalTemperature.minMeasurementsBinomial(samples, maxSettings);
+        if (length >= MAX_TABLE_LENGTH)
+            return TOO_LARGE;
+        long[] previous = samples > 2 ? tables.get(samples - 1) : null;
+        long[] table = new long[(int) length + 1];
+        for (int moves = 0; moves < length; moves++) {
+            long fewer = samples == 2 ? Math.min(moves, maxSettings) // coverage(moves, 1) = moves
+                    : previous != null && previous != TOO_LARGE
+                            ? (moves < previous.length ? previous[moves] : maxSettings)
+                            : Q1aCriticalTemperature.coverage(moves, samples - 1, maxSettings);
+            long next = 1 + fewer + table[moves];
+            table[moves + 1] = next < 0 || next > maxSettings ? maxSettings : next; // Saturate
+        }
+        return table;
+    }
+}
+
+// Adaptive test campaign for finding the critical setting among settings 1..n, where the
+// critical setting is the highest one a sample survives (0 if every setting breaks a sample).
+// The state is the open interval of candidates (lo, hi], the samples left and the measurements
+// left. With k samples and m measurements the next test goes coverage(m - 1, k - 1) + 1 settings
+// above lo: if the sample breaks, the settings below it are covered by the remaining k - 1
+// samples and m - 1 measurements, and if it survives, the settings above it are covered by
+// k samples and m - 1 measurements. Each step is a constant number of index lookups.
+class MeasurementPlan {
+    private final CoverageIndex index; // Shared coverage tables
+    private long lo, hi; // Setting lo is known safe; the critical setting lies in [lo, hi]
+    private int samples; // Samples still intact
+    private long moves; // Measurements still available
+
+    MeasurementPlan(CoverageIndex index, int samples, long settings) {
+        this.index = index;
+        this.lo = 0;
+        this.hi = settings;
+        this.samples = samples;
+        this.moves = index.minMeasurements(samples, settings); // Also validates the arguments
+    }
+
+    // True once the critical setting is known
+    boolean isResolved() {
+        return lo == hi;
+    }
+
+    // The setting to test next
+    long nextSetting() {
+        if (isResolved())
+            throw new IllegalStateException("the critical setting is already known");
+        return nextSetting(index, lo, hi, samples, moves);
+    }
+
+    // Records the outcome of testing nextSetting(): true when the sample broke
+    void record(boolean sampleBroke) {
+        long setting = nextSetting();
+        if (sampleBroke) {
+            hi = setting - 1; // The critical setting lies below the tested one
+            samples--;
+        } else {
+            lo = setting; // The tested setting is safe
+        }
+        moves--;
+    }
+
+    // The critical setting, once resolved
+    long criticalSetting() {
+        if (!isResolved())
+            throw new IllegalStateException("more measurements are needed");
+        return lo;
+    }
+
+    private static long nextSetting(CoverageIndex index, long lo, long hi, int samples, long moves) {
+        long below = index.coverage(samples - 1, moves - 1); // Settings a broken sample leaves to resolve
+        return lo + Math.min(below + 1, hi - lo);
+    }
+
+    // Writes the full decision tree for the given samples and settings. The format is a header of
+    // two varints (samples, settings) followed by the tree in preorder: each test node is a varint
+    // holding the tested setting minus the interval's lower bound (always at least 1), then its
+    // "broke" subtree, then its "survived" subtree; a resolved leaf is a single 0 byte. The tree is
+    // walked with an explicit stack, so long single-sample chains cannot overflow the call stack.
+    static void export(CoverageIndex index, int samples, long settings, OutputStream out) throws IOException {
+        long moves = index.minMeasurements(samples, settings);
+        OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        writeVarLong(buffered, samples);
+        writeVarLong(buffered, settings);
+
+        int capacity = 64, top = 0;
+        long[] los = new long[capacity], his = new long[capacity], moveStack = new long[capacity];
+        int[] sampleStack = new int[capacity];
+        los[0] = 0;
+        his[0] = settings;
+        sampleStack[0] = samples;
+        moveStack[0] = moves;
+        top = 1;
+        while (top > 0) {
+            top--;
+            long lo = los[top], hi = his[top], m = moveStack[top];
+            int k = sampleStack[top];
+            if (lo == hi) {
+                buffered.write(0); // Leaf: the critical setting is lo
+                continue;
+            }
+            long setting = nextSetting(index, lo, hi, k, m);
+            writeVarLong(buffered, setting - lo);
+            if (top + 2 > capacity) { // Grow the stack arrays together
+                capacity *= 2;
+                los = Arrays.copyOf(los, capacity);
+                his = Arrays.copyOf(his, capacity);
+                moveStack = Arrays.copyOf(moveStack, capacity);
+                sampleStack = Arrays.copyOf(sampleStack, capacity);
+            }
+            // Push "survived" first so the "broke" subtree is written first
+            los[top] = setting;
+            his[top] = hi;
+            sampleStack[top] = k;
+            moveStack[top++] = m - 1;
+            los[top] = lo;
+            his[top] = setting - 1;
+            sampleStack[top] = k - 1;
+            moveStack[top++] = m - 1;
+        }
+        buffered.flush();
+    }
+
+    // Unsigned LEB128 encoding: seven bits per byte, high bit set on all but the last byte
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -4,7 +4,25 @@
 // first, a left-to-right pass increases rewards for employees with higher ratings than their left neighbor, 
 // and then a right-to-left pass adjusts rewards for those with higher ratings than their right neighbor. 
 // Finally, the total rewards are calculated by summing all values in the rewards array and returning the result.
+// For very large rating arrays a single-pass engine tracks only the lengths of the current
+// ascending and descending slopes and returns a long total without allocating the rewards array.
+// A parallel mode splits the array at local minima, whose reward is always one, and sums the
+// segments on a ForkJoinPool; ratings can also be read from a memory-mapped file of int32 values.
+// The RewardLedger class keeps both passes of the two-pass algorithm so that a single rating
+// change only repairs the monotone runs around it and adjusts a running total.
+// RewardStream applies the single-pass engine to an unbounded feed of ratings, keeping O(1)
+// state and reporting the exact minimum for the prefix seen so far.
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
 
 public class Q2AMinimumRewards { //  encapsulates the solution for allocating rewards based on ratings
 
@@ -44,13 +62,263 @@ public class Q2AMinimumRewards { //  encapsulates the solution for allocating re
         return totalRewards; // Return the final computed total rewards
     }
 
+    // Single-pass engine: same result as minRewards, returned as a long, with O(1) extra memory
+    public static long minRewardsLong(int[] ratings) {
+        return ratings.length == 0 ? 0 : minRewards(ratings, 0, ratings.length - 1);
+    }
+
+    // Minimum rewards for ratings[from..to] (inclusive) as if it were the whole array, computed
+    // by feeding the range through a RewardStream
+    static long minRewards(int[] ratings, int from, int to) {
+        RewardStream stream = new RewardStream();
+        for (int i = from; i <= to; i++)
+            stream.accept(ratings[i]);
+        return stream.total();
+    }
+
+    // Parallel engine: splits the ratings at local minima and reduces the segments on the pool
+    public static long minRewardsParallel(int[] ratings, ForkJoinPool pool) {
+        return ratings.length == 0 ? 0 : pool.invoke(new SegmentTask(ratings, 0, ratings.length - 1));
+    }
+
+    // Reads little-endian int32 ratings from a file through memory-mapped windows and feeds them
+    // to a RewardStream, so the ratings never have to fit on the heap
+    public static long minRewards(Path file) throws IOException {
+        RewardStream stream = new RewardStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bytes = channel.size() / Integer.BYTES * Integer.BYTES; // Ignore a trailing partial value
+            long window = (Integer.MAX_VALUE / Integer.BYTES) * (long) Integer.BYTES; // Largest int-aligned mapping
+            for (long offset = 0; offset < bytes; offset += window) {
+                IntBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(window, bytes - offset))
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                for (int i = 0; i < values.limit(); i++)
+                    stream.accept(values.get(i));
+            }
+        }
+        return stream.total();
+    }
+
+    // Sums the rewards of ratings[from..to]. Both ends are array ends or local minima, so the
+    // segment can be solved on its own; larger segments are split again at a local minimum near
+    // the middle, which both halves count once, hence the minus one when the halves are added.
+    private static final class SegmentTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 1 << 16; // Below this size a segment is solved sequentially
+        private final int[] ratings;
+        private final int from, to;
+
+        SegmentTask(int[] ratings, int from, int to) {
+            this.ratings = ratings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from < THRESHOLD)
+                return minRewards(ratings, from, to);
+            int cut = localMinimumNear((from + to) >>> 1);
+            if (cut < 0)
+                return minRewards(ratings, from, to); // One long monotone run: nowhere to split
+            SegmentTask left = new SegmentTask(ratings, from, cut);
+            left.fork();
+            long right = new SegmentTask(ratings, cut, to).compute();
+            return left.join() + right - 1; // The shared local minimum holds exactly one reward
+        }
+
+        // First interior local minimum at or after mid, else the last one before it, else -1
+        private int localMinimumNear(int mid) {
+            for (int i = mid; i < to; i++)
+                if (ratings[i] <= ratings[i - 1] && ratings[i] <= ratings[i + 1])
+                    return i;
+            for (int i = mid - 1; i > from; i--)
+                if (ratings[i] <= ratings[i - 1] && ratings[i] <= ratings[i + 1])
+                    return i;
+            return -1;
+        }
+    }
+
+    // Times the sequential and parallel engines at each size given (default 10^6 to 10^8).
+    // Run with: java Q2AMinimumRewards --bench [size...]
+    static void benchmark(long[] sizes) {
+        Random random = new Random(42);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (long size : sizes) {
+            int[] ratings = new int[(int) size];
+            for (int i = 0; i < ratings.length; i++)
+                ratings[i] = random.nextInt(100); // Small range so equal and monotone runs both occur
+            for (int round = 0; round < 3; round++) { // Both totals are printed so a mismatch shows up next to the times
+                long start = System.nanoTime();
+                long sequential = minRewardsLong(ratings);
+                long sequentialTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                long parallel = minRewardsParallel(ratings, pool);
+                long parallelTime = System.nanoTime() - start;
+                System.out.printf("n=%d round %d: sequential %d (%.1f ms), parallel %d (%.1f ms, %d threads)%n",
+                        size, round, sequential, sequentialTime / 1e6, parallel, parallelTime / 1e6,
+                        pool.getParallelism());
+            }
+        }
+    }
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) { // Time the sequential and parallel reward engines
+            long[] sizes = args.length > 1 ? new long[args.length - 1]
+                    : new long[] { 1_000_000L, 10_000_000L, 100_000_000L };
+            for (int i = 1; i < args.length; i++)
+                sizes[i - 1] = Long.parseLong(args[i]);
+            benchmark(sizes);
+            return;
+        }
+
         // Execute sample test cases to validate the solution
         System.out.println("Minimum rewards needed: " + minRewards(new int[] { 1, 0, 2 })); // Test case 1: Expected output 5
         System.out.println("Minimum rewards needed: " + minRewards(new int[] { 1, 2, 2 })); // Test case 2: Expected output 4
+
+        // The single-pass and parallel engines give the same totals as longs
+        System.out.println("Minimum rewards needed: " + minRewardsLong(new int[] { 1, 0, 2 })); // Expected output 5
+        System.out.println("Minimum rewards needed: "
+                + minRewardsParallel(new int[] { 1, 2, 2 }, ForkJoinPool.commonPool())); // Expected output 4
+
+        // Update random ratings one at a time and compare the ledger with a full recomputation
+        Random random = new Random(7);
+        int[] ratings = new int[1000];
+        for (int i = 0; i < ratings.length; i++)
+            ratings[i] = random.nextInt(20);
+        RewardLedger ledger = new RewardLedger(ratings);
+        boolean matches = true;
+        for (int update = 0; update < 10_000; update++) {
+            int i = random.nextInt(ratings.length);
+            ratings[i] = random.nextInt(20);
+            ledger.updateRating(i, ratings[i]);
+            matches &= ledger.total() == minRewardsLong(ratings);
+        }
+        System.out.println("Ledger matches full recomputation: " + matches); // Expected output true
+
+        // Feed ratings one at a time and read the exact total after every prefix
+        RewardStream stream = new RewardStream();
+        StringBuilder prefixes = new StringBuilder("Prefix totals:");
+        for (int rating : new int[] { 1, 3, 2, 1, 1, 4 }) {
+            stream.accept(rating);
+            prefixes.append(' ').append(stream.total());
+        }
+        System.out.println(prefixes); // Expected output 1 3 4 7 8 10
     }
 }
 
 // Expected Output:
 // Minimum rewards needed: 5
 // Minimum rewards needed: 4
+// Minimum rewards needed: 5
+// Minimum rewards needed: 4
+// Ledger matches full recomputation: true
+// Prefix totals: 1 3 4 7 8 10
+
+// Stateful reward allocation that follows rating changes. It stores the result of each pass of
+// the two-pass algorithm: left[i] is the reward required by the ascending run ending at i, and
+// right[i] the reward required by the descending run starting at i. Employee i receives
+// max(left[i], right[i]). Changing rating i can only change left[] from i rightwards until a
+// value comes out unchanged, and right[] from i leftwards likewise, so an update costs the
+// length of the affected runs and the total is adjusted one employee at a time.
+class RewardLedger {
+    private final int[] ratings; // Private copy of the current ratings
+    private final int[] left, right; // Rewards required by the left-to-right and right-to-left passes
+    private long total; // Sum of max(left[i], right[i]) over all employees
+
+    RewardLedger(int[] ratings) {
+        int n = ratings.length;
+        this.ratings = ratings.clone();
+        left = new int[n];
+        right = new int[n];
+        for (int i = 0; i < n; i++) // Left-to-right pass
+            left[i] = i > 0 && ratings[i] > ratings[i - 1] ? left[i - 1] + 1 : 1;
+        for (int i = n - 1; i >= 0; i--) // Right-to-left pass
+            right[i] = i < n - 1 && ratings[i] > ratings[i + 1] ? right[i + 1] + 1 : 1;
+        for (int i = 0; i < n; i++)
+            total += Math.max(left[i], right[i]);
+    }
+
+    // Changes the rating of employee i and repairs the rewards around it
+    void updateRating(int i, int newValue) {
+        int n = ratings.length;
+        if (i < 0 || i >= n)
+            throw new IndexOutOfBoundsException("employee " + i + " out of " + n);
+        ratings[i] = newValue;
+
+        // left[i] and left[i + 1] compare against the changed rating; further right, left[j]
+        // only changes if left[j - 1] did
+        boolean changed = true;
+        for (int j = i; j < n && (changed || j <= i + 1); j++) {
+            int value = j > 0 && ratings[j] > ratings[j - 1] ? left[j - 1] + 1 : 1;
+            changed = value != left[j];
+            if (changed) {
+                total += Math.max(value, right[j]) - Math.max(left[j], right[j]);
+                left[j] = value;
+            }
+        }
+
+        // Mirror image for the right-to-left pass, using the repaired left[] values
+        changed = true;
+        for (int j = i; j >= 0 && (changed || j >= i - 1); j--) {
+            int value = j < n - 1 && ratings[j] > ratings[j + 1] ? right[j + 1] + 1 : 1;
+            changed = value != right[j];
+            if (changed) {
+                total += Math.max(left[j], value) - Math.max(left[j], right[j]);
+                right[j] = value;
+            }
+        }
+    }
+
+    // Current minimum total rewards
+    long total() {
+        return total;
+    }
+
+    // Current reward of employee i
+    int reward(int i) {
+        return Math.max(left[i], right[i]);
+    }
+}
+
+// The single-pass engine, fed one rating at a time. Only the previous rating and the current
+// slope lengths are kept, so memory stays constant however long the feed is, and total() is the
+// exact minimum for the ratings accepted so far. up and down are the lengths of the current
+// ascending and descending slopes, and peak is the length of the ascent that ended at the top of
+// the current descent. Each step of a descent adds one reward to every element already in it,
+// plus one to the peak once the descent grows longer than the ascent that led to the peak.
+class RewardStream implements IntConsumer {
+    private long count; // Ratings accepted so far
+    private long total; // Minimum rewards for those ratings
+    private int previous; // Most recent rating
+    private int up, down, peak; // Current ascent, current descent, and the ascent before the descent
+
+    @Override
+    public void accept(int rating) {
+        if (count++ == 0) {
+            total = 1; // The first employee gets one reward
+        } else if (rating > previous) { // Ascending: one more than the left neighbour
+            up++;
+            down = 0;
+            peak = up;
+            total += 1 + up;
+        } else if (rating == previous) { // Equal ratings reset both slopes
+            up = down = peak = 0;
+            total += 1;
+        } else { // Descending: every element of the descent gains one reward
+            up = 0;
+            down++;
+            total += 1 + down - (peak >= down ? 1 : 0);
+        }
+        previous = rating;
+    }
+
+    // Minimum total rewards for the ratings seen so far
+    long total() {
+        return total;
+    }
+
+    // Number of ratings seen so far
+    long count() {
+        return count;
+    }
+}
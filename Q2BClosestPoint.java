@@ -2,7 +2,33 @@
 // It iterates over all combinations of points, computing their distances and updating the closest pair as needed.
 // In cases where pairs have identical distances, it chooses the pair with lexicographically smallest indices.
 // The method returns the indices of the closest pair, while the main function demonstrates this with sample coordinates and prints the result.
+// For large point sets the ManhattanClosestPair engine solves the same problem in O(n log n) with
+// divide and conquer: points are split by x, each half is solved, and pairs across the split are
+// checked in a strip sorted by y. Every comparison is inclusive, so every pair at the minimum
+// distance is seen and the lexicographic tie-break stays exact; distances are long values.
+// A parallel mode runs the two halves as ForkJoin tasks and merges their results through the
+// same strip check, so it returns exactly the pair the sequential engine returns.
+// ManhattanKdTree indexes the same coordinate arrays once for repeated nearest, k-nearest and
+// range queries under L1, stored as a packed k-d tree in flat primitive arrays.
+// DynamicClosestPair keeps the closest pair current while points are inserted, removed and moved,
+// using a nearest-neighbour entry per point, an indexed heap, and k-d trees merged in powers of two.
+// PointFile loads points from a little-endian (x, y) int32 file through memory mapping and has an
+// external mode that sorts the file by x in chunks on disk, solves each chunk in memory and
+// checks the strips around chunk boundaries, so the heap only ever holds a fixed number of points.
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
 
 public class Q2BClosestPoint { // Class Qn2b definition
 
@@ -31,7 +57,89 @@ public class Q2BClosestPoint { // Class Qn2b definition
         return result; // Return the indices corresponding to the closest pair of points
     }
 
-    public static void main(String[] args) {
+    // O(n log n) version of findClosestPair with the same result, including the tie-break
+    public static int[] findClosestPairFast(int[] x_coords, int[] y_coords) {
+        long[] best = ManhattanClosestPair.solve(x_coords, y_coords);
+        return best[0] == Long.MAX_VALUE ? new int[] { 0, 0 } : new int[] { (int) best[1], (int) best[2] };
+    }
+
+    // Parallel version of findClosestPairFast; returns exactly the same pair
+    public static int[] findClosestPairParallel(int[] x_coords, int[] y_coords, ForkJoinPool pool) {
+        long[] best = ManhattanClosestPair.solveParallel(x_coords, y_coords, pool);
+        return best[0] == Long.MAX_VALUE ? new int[] { 0, 0 } : new int[] { (int) best[1], (int) best[2] };
+    }
+
+    // Closest pair of the points in a little-endian (x, y) int32 file, found with at most
+    // chunkPoints points on the heap at a time; the sort runs go to a temporary directory
+    public static int[] findClosestPairExternal(Path file, int chunkPoints) throws IOException {
+        Path workDir = Files.createTempDirectory("closest-pair");
+        try {
+            long[] best = PointFile.closestPairExternal(file, chunkPoints, workDir);
+            return best[0] == Long.MAX_VALUE ? new int[] { 0, 0 } : new int[] { (int) best[1], (int) best[2] };
+        } finally {
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    // Brute-force closest pair over the live points, or null when fewer than two are alive
+    private static int[] bruteForceClosest(int[] xs, int[] ys, boolean[] alive, int count) {
+        long[] best = { Long.MAX_VALUE, 0, 0 };
+        for (int i = 0; i < count; i++)
+            for (int j = i + 1; j < count; j++)
+                if (alive[i] && alive[j])
+                    ManhattanClosestPair.offer(xs, ys, i, j, best);
+        return best[0] == Long.MAX_VALUE ? null : new int[] { (int) best[1], (int) best[2] };
+    }
+
+    // Times the brute-force scan and the divide-and-conquer engine on random points.
+    // Run with: java Q2BClosestPoint --bench [size...]
+    static void benchmark(int[] sizes) {
+        Random random = new Random(42);
+        for (int size : sizes) {
+            int[] x = new int[size], y = new int[size];
+            for (int i = 0; i < size; i++) { // Keep coordinates small enough for the int brute-force distances
+                x[i] = random.nextInt(1 << 29) - (1 << 28);
+                y[i] = random.nextInt(1 << 29) - (1 << 28);
+            }
+            for (int round = 0; round < 3; round++) { // Brute force and divide and conquer should print the same pair
+                String brute = "skipped";
+                if (size <= 100_000) { // The quadratic scan is impractical beyond this
+                    long start = System.nanoTime();
+                    int[] pair = findClosestPair(x, y);
+                    brute = Arrays.toString(pair) + String.format(" (%.1f ms)", (System.nanoTime() - start) / 1e6);
+                }
+                long start = System.nanoTime();
+                int[] pair = findClosestPairFast(x, y);
+                long fastTime = System.nanoTime() - start;
+                System.out.printf("n=%d round %d: brute force %s, divide and conquer %s (%.1f ms)%n",
+                        size, round, brute, Arrays.toString(pair), fastTime / 1e6);
+            }
+            for (int threads : new int[] { 1, 2, 4, 8, 16 }) { // Scaling of the parallel mode
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long time = Long.MAX_VALUE;
+                int[] pair = null;
+                for (int round = 0; round < 3; round++) { // Fastest of three runs on this pool
+                    long start = System.nanoTime();
+                    pair = findClosestPairParallel(x, y, pool);
+                    time = Math.min(time, System.nanoTime() - start);
+                }
+                pool.shutdown();
+                System.out.printf("n=%d parallel with %d threads: %s (%.1f ms)%n",
+                        size, threads, Arrays.toString(pair), time / 1e6);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--bench")) { // Time the closest-pair engines on random points
+            int[] sizes = args.length > 1 ? new int[args.length - 1]
+                    : new int[] { 1_000, 10_000, 100_000, 1_000_000, 10_000_000 };
+            for (int i = 1; i < args.length; i++)
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            benchmark(sizes);
+            return;
+        }
+
         // Example test scenario
         int[] x_coords = { 1, 2, 3, 2, 4 }; // Define the x-coordinates for the test points
         int[] y_coords = { 2, 3, 1, 2, 3 }; // Define the y-coordinates for the test points
@@ -41,8 +149,1083 @@ public class Q2BClosestPoint { // Class Qn2b definition
 
         // Output the indices of the nearest point pair
         System.out.println("Closest pair of points: [" + closestPair[0] + ", " + closestPair[1] + "]");
+
+        // The divide-and-conquer engine returns the same pair
+        closestPair = findClosestPairFast(x_coords, y_coords);
+        System.out.println("Closest pair of points: [" + closestPair[0] + ", " + closestPair[1] + "]");
+
+        // So does the parallel mode
+        closestPair = findClosestPairParallel(x_coords, y_coords, ForkJoinPool.commonPool());
+        System.out.println("Closest pair of points: [" + closestPair[0] + ", " + closestPair[1] + "]");
+
+        // Build a k-d tree once and query it repeatedly
+        ManhattanKdTree tree = new ManhattanKdTree(x_coords, y_coords);
+        ManhattanKdTree.Scratch scratch = tree.newScratch(2);
+        int[] nearest = new int[2];
+        int nearestPoint = tree.nearest(3, 3, scratch);
+        System.out.println("Nearest point to (3, 3): " + nearestPoint + " at distance " + scratch.distance());
+        int found = tree.kNearest(3, 3, 2, scratch, nearest);
+        System.out.println("Two nearest points to (3, 3): " + Arrays.toString(Arrays.copyOf(nearest, found)));
+        StringBuilder inRange = new StringBuilder("Points within distance 1 of (2, 2):");
+        tree.range(2, 2, 1, id -> inRange.append(' ').append(id));
+        System.out.println(inRange);
+
+        // Keep the closest pair current under random insertions, removals and moves
+        Random random = new Random(11);
+        DynamicClosestPair dynamic = new DynamicClosestPair();
+        int[] xs = new int[400], ys = new int[400];
+        boolean[] alive = new boolean[400];
+        int created = 0;
+        boolean matches = true;
+        for (int event = 0; event < 4000; event++) {
+            int kind = random.nextInt(3), id = created > 0 ? random.nextInt(created) : 0;
+            int x = random.nextInt(200), y = random.nextInt(200);
+            if (kind == 0 && created < xs.length) { // Insert a new point
+                id = dynamic.insert(x, y);
+                created++;
+            } else if (kind == 1 && created > 0 && alive[id]) { // Remove a point
+                dynamic.remove(id);
+                alive[id] = false;
+                continue;
+            } else if (kind == 2 && created > 0 && alive[id]) { // Move a point
+                dynamic.move(id, x, y);
+            } else {
+                continue;
+            }
+            xs[id] = x;
+            ys[id] = y;
+            alive[id] = true;
+            matches &= Arrays.equals(dynamic.closest(), bruteForceClosest(xs, ys, alive, created));
+        }
+        System.out.println("Dynamic closest pair matches brute force: " + matches);
+
+        // Write the example points to a binary file and solve it two points at a time
+        Path file = Files.createTempFile("points", ".bin");
+        try {
+            PointFile.write(file, x_coords, y_coords);
+            int[][] loaded = PointFile.load(file);
+            closestPair = findClosestPair(loaded[0], loaded[1]);
+            System.out.println("Closest pair of points: [" + closestPair[0] + ", " + closestPair[1] + "]");
+            closestPair = findClosestPairExternal(file, 2);
+            System.out.println("Closest pair of points: [" + closestPair[0] + ", " + closestPair[1] + "]");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
+
+// Divide-and-conquer closest pair under the Manhattan (L1) metric. Results are long[3] arrays
+// {distance, i, j} with i < j, where a pair beats another when its distance is smaller or, at
+// equal distance, when its indices are lexicographically smaller. Duplicate points are handled
+// up front (distance 0). Once all points are distinct, a strip of height d around a point holds
+// only a constant number of points, even with the inclusive comparisons that keep ties exact.
+class ManhattanClosestPair {
+    private static final int BRUTE_FORCE_SIZE = 3; // Subproblems this small are scanned directly
+
+    // Closest pair of the points, or {Long.MAX_VALUE, 0, 0} when there are fewer than two
+    static long[] solve(int[] xs, int[] ys) {
+        long[] best = { Long.MAX_VALUE, 0, 0 };
+        int n = xs.length;
+        if (n < 2 || findDuplicates(xs, ys, best, false))
+            return best;
+        int[] order = sortedByX(xs, n, false);
+        solve(xs, ys, order, new int[n], 0, n, best);
+        return best;
+    }
+
+    // Same result as solve, with the sorts and the recursion spread across the pool. Every task
+    // owns a disjoint slice of order and aux, so the only objects created are the tasks and
+    // their three-element results; the points themselves stay in the primitive coordinate arrays.
+    static long[] solveParallel(int[] xs, int[] ys, ForkJoinPool pool) {
+        long[] best = { Long.MAX_VALUE, 0, 0 };
+        int n = xs.length;
+        if (n < 2)
+            return best;
+        return pool.invoke(new RecursiveTask<long[]>() {
+            @Override
+            protected long[] compute() { // Run the presorts inside the pool so they use its threads
+                if (findDuplicates(xs, ys, best, true))
+                    return best;
+                int[] order = sortedByX(xs, n, true);
+                return new SolveTask(xs, ys, order, new int[n], 0, n).compute();
+            }
+        });
+    }
+
+    // Solves order[lo, hi), which arrives sorted by x, and leaves it sorted by y
+    static void solve(int[] xs, int[] ys, int[] order, int[] aux, int lo, int hi, long[] best) {
+        if (hi - lo <= BRUTE_FORCE_SIZE) {
+            for (int a = lo; a < hi; a++)
+                for (int b = a + 1; b < hi; b++)
+                    offer(xs, ys, order[a], order[b], best);
+            insertionSortByY(ys, order, lo, hi);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int midX = xs[order[mid]]; // Dividing line, read before the halves are re-sorted by y
+        solve(xs, ys, order, aux, lo, mid, best);
+        solve(xs, ys, order, aux, mid, hi, best);
+        mergeByY(ys, order, aux, lo, mid, hi);
+        checkStrip(xs, ys, order, aux, lo, hi, midX, best);
+    }
+
+    // Compares every pair within distance best[0] of each other that could straddle the line x = midX.
+    // order[lo, hi) must be sorted by y; aux[lo, hi) is used to hold the strip.
+    static void checkStrip(int[] xs, int[] ys, int[] order, int[] aux, int lo, int hi, int midX, long[] best) {
+        int size = lo;
+        for (int k = lo; k < hi; k++)
+            if (Math.abs((long) xs[order[k]] - midX) <= best[0])
+                aux[size++] = order[k]; // Still sorted by y
+        for (int a = lo; a < size; a++) {
+            int p = aux[a];
+            for (int b = a + 1; b < size && (long) ys[aux[b]] - ys[p] <= best[0]; b++)
+                offer(xs, ys, p, aux[b], best);
+        }
+    }
+
+    // Updates best when the pair (p, q) beats it
+    static void offer(int[] xs, int[] ys, int p, int q, long[] best) {
+        long dist = Math.abs((long) xs[p] - xs[q]) + Math.abs((long) ys[p] - ys[q]);
+        offer(dist, Math.min(p, q), Math.max(p, q), best);
+    }
+
+    // Updates best when the pair (i, j), i < j, at the given distance beats it
+    static void offer(long dist, long i, long j, long[] best) {
+        if (dist < best[0] || (dist == best[0] && (i < best[1] || (i == best[1] && j < best[2])))) {
+            best[0] = dist;
+            best[1] = i;
+            best[2] = j;
+        }
+    }
+
+    // Point indices sorted by x (ties by index), using a primitive sort of packed longs
+    static int[] sortedByX(int[] xs, int n, boolean parallel) {
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = ((long) xs[i] << 32) | i; // Signed x in the high half keeps the signed order
+        if (parallel)
+            Arrays.parallelSort(keys);
+        else
+            Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+    // If two points coincide, stores the lexicographically smallest coinciding pair in best and
+    // returns true. A sort of packed (x, y) keys detects duplicates; when one exists, the first
+    // index whose key occurs twice in the sorted keys is the smaller index of that pair and the
+    // next index at the same point is the larger one, so no objects are created either way.
+    static boolean findDuplicates(int[] xs, int[] ys, long[] best, boolean parallel) {
+        int n = xs.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = key(xs[i], ys[i]);
+        if (parallel)
+            Arrays.parallelSort(keys);
+        else
+            Arrays.sort(keys);
+        boolean found = false;
+        for (int i = 1; i < n && !found; i++)
+            found = keys[i] == keys[i - 1];
+        if (!found)
+            return false;
+        int i = 0;
+        while (!repeated(keys, key(xs[i], ys[i])))
+            i++;
+        long point = key(xs[i], ys[i]);
+        int j = i + 1;
+        while (key(xs[j], ys[j]) != point)
+            j++;
+        offer(0, i, j, best);
+        return true;
+    }
+
+    // Whether the key, which is known to be present, occurs at least twice in the sorted keys
+    private static boolean repeated(long[] keys, long key) {
+        int at = Arrays.binarySearch(keys, key);
+        return (at > 0 && keys[at - 1] == key) || (at + 1 < keys.length && keys[at + 1] == key);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static void insertionSortByY(int[] ys, int[] order, int lo, int hi) {
+        for (int a = lo + 1; a < hi; a++) {
+            int p = order[a], b = a - 1;
+            while (b >= lo && ys[order[b]] > ys[p]) {
+                order[b + 1] = order[b];
+                b--;
+            }
+            order[b + 1] = p;
+        }
+    }
+
+    // Parallel subproblem over order[lo, hi); returns its own best pair. Small slices run the
+    // sequential recursion; larger ones fork both halves, keep the better of their results and
+    // then run the usual merge and strip check, which only ever improve on that pair.
+    private static final class SolveTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 1 << 13; // Below this size a slice is solved sequentially
+        private final int[] xs, ys, order, aux;
+        private final int lo, hi;
+
+        SolveTask(int[] xs, int[] ys, int[] order, int[] aux, int lo, int hi) {
+            this.xs = xs;
+            this.ys = ys;
+            this.order = order;
+            this.aux = aux;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected long[] compute() {
+            long[] best = { Long.MAX_VALUE, 0, 0 };
+            if (hi - lo <= THRESHOLD) {
+                solve(xs, ys, order, aux, lo, hi, best);
+                return best;
+            }
+            int mid = (lo + hi) >>> 1;
+            int midX = xs[order[mid]]; // Dividing line, read before the halves are re-sorted by y
+            SolveTask left = new SolveTask(xs, ys, order, aux, lo, mid);
+            left.fork();
+            long[] right = new SolveTask(xs, ys, order, aux, mid, hi).compute();
+            long[] leftBest = left.join();
+            offer(leftBest[0], leftBest[1], leftBest[2], best);
+            offer(right[0], right[1], right[2], best);
+            mergeByY(ys, order, aux, lo, mid, hi);
+            checkStrip(xs, ys, order, aux, lo, hi, midX, best);
+            return best;
+        }
+    }
+
+    // Merges the y-sorted runs order[lo, mid) and order[mid, hi) through aux
+    private static void mergeByY(int[] ys, int[] order, int[] aux, int lo, int mid, int hi) {
+        int a = lo, b = mid, k = lo;
+        while (a < mid && b < hi)
+            aux[k++] = ys[order[b]] < ys[order[a]] ? order[b++] : order[a++];
+        while (a < mid)
+            aux[k++] = order[a++];
+        while (b < hi)
+            aux[k++] = order[b++];
+        System.arraycopy(aux, lo, order, lo, hi - lo);
     }
 }
 
 // output
 // Closest pair of points: [0, 3]
+// Closest pair of points: [0, 3]
+// Closest pair of points: [0, 3]
+// Nearest point to (3, 3): 1 at distance 1
+// Two nearest points to (3, 3): [1, 4]
+// Points within distance 1 of (2, 2): 1 0 3
+// Dynamic closest pair matches brute force: true
+// Closest pair of points: [0, 3]
+// Closest pair of points: [0, 3]
+
+// Static k-d tree for L1 queries, stored in flat arrays. The points are permuted so that every
+// subtree is a contiguous range [lo, hi) whose median element sits at (lo + hi) >>> 1 and splits
+// the range on x at even depths and on y at odd depths. Queries walk the tree with an explicit
+// stack kept in a per-thread Scratch object, so a lookup allocates nothing; the tree itself is
+// never modified after construction and can be shared by any number of reader threads.
+// Ties are broken by the smaller point index, matching findClosestPair.
+class ManhattanKdTree {
+    private static final int STACK_SIZE = 2 * 64 + 4; // Each level adds at most two entries
+    private final int[] xs, ys, ids; // Permuted coordinates and their original indices
+    private final int size;
+
+    ManhattanKdTree(int[] x_coords, int[] y_coords) {
+        size = x_coords.length;
+        xs = x_coords.clone();
+        ys = y_coords.clone();
+        ids = new int[size];
+        for (int i = 0; i < size; i++)
+            ids[i] = i;
+        build(0, size, 0);
+    }
+
+    // Builds a tree over the first count entries of the given arrays, keeping the given ids
+    ManhattanKdTree(int[] x_coords, int[] y_coords, int[] pointIds, int count) {
+        size = count;
+        xs = Arrays.copyOf(x_coords, count);
+        ys = Arrays.copyOf(y_coords, count);
+        ids = Arrays.copyOf(pointIds, count);
+        build(0, size, 0);
+    }
+
+    // Decides whether a stored entry still takes part in queries
+    interface PointFilter {
+        boolean accept(int id, int x, int y);
+    }
+
+    // Per-thread query state: the traversal stack, the k-nearest heap and the last distance found
+    static final class Scratch {
+        private final int[] stackLo = new int[STACK_SIZE], stackHi = new int[STACK_SIZE], stackDepth = new int[STACK_SIZE];
+        private final long[] stackBound = new long[STACK_SIZE]; // Lower bound on the distance into each entry
+        private final long[] heapDist; // Max-heap of the best k candidates
+        private final int[] heapId;
+        private long distance = -1; // Distance of the last nearest() result
+
+        Scratch(int maxK) {
+            heapDist = new long[maxK];
+            heapId = new int[maxK];
+        }
+
+        // Distance from the last nearest() query to the point it returned, -1 when there was none
+        long distance() {
+            return distance;
+        }
+    }
+
+    // Scratch space for one thread, allowing k-nearest queries up to maxK
+    Scratch newScratch(int maxK) {
+        return new Scratch(Math.max(1, maxK));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Coordinates and index of the entry stored at a position, for rebuilding trees
+    int xAt(int position) {
+        return xs[position];
+    }
+
+    int yAt(int position) {
+        return ys[position];
+    }
+
+    int idAt(int position) {
+        return ids[position];
+    }
+
+    // Index of the point nearest to (qx, qy), or -1 when the tree is empty
+    int nearest(int qx, int qy, Scratch scratch) {
+        return nearest(qx, qy, scratch, null);
+    }
+
+    // Nearest point among the entries the filter accepts (all entries when it is null)
+    int nearest(int qx, int qy, Scratch scratch, PointFilter filter) {
+        long bestDist = Long.MAX_VALUE;
+        int bestId = -1;
+        int top = push(scratch, 0, 0, size, 0, 0);
+        while (top > 0) {
+            top--;
+            int lo = scratch.stackLo[top], hi = scratch.stackHi[top], depth = scratch.stackDepth[top];
+            if (lo >= hi || scratch.stackBound[top] > bestDist)
+                continue; // Empty, or cannot hold anything closer
+            int mid = (lo + hi) >>> 1;
+            long dist = Math.abs((long) xs[mid] - qx) + Math.abs((long) ys[mid] - qy);
+            if ((dist < bestDist || (dist == bestDist && ids[mid] < bestId))
+                    && (filter == null || filter.accept(ids[mid], xs[mid], ys[mid]))) {
+                bestDist = dist;
+                bestId = ids[mid];
+            }
+            top = pushChildren(scratch, top, lo, mid, hi, depth, qx, qy, scratch.stackBound[top]);
+        }
+        scratch.distance = bestId < 0 ? -1 : bestDist;
+        return bestId;
+    }
+
+    // Writes the indices of the k points nearest to (qx, qy) into out, closest first, and
+    // returns how many were written (fewer than k only when the tree is smaller than k)
+    int kNearest(int qx, int qy, int k, Scratch scratch, int[] out) {
+        if (k > scratch.heapDist.length || k > out.length)
+            throw new IllegalArgumentException("k exceeds the scratch or output capacity: " + k);
+        long[] heapDist = scratch.heapDist;
+        int[] heapId = scratch.heapId;
+        int count = 0;
+        int top = push(scratch, 0, 0, size, 0, 0);
+        while (top > 0 && k > 0) {
+            top--;
+            int lo = scratch.stackLo[top], hi = scratch.stackHi[top], depth = scratch.stackDepth[top];
+            if (lo >= hi || (count == k && scratch.stackBound[top] > heapDist[0]))
+                continue;
+            int mid = (lo + hi) >>> 1;
+            long dist = Math.abs((long) xs[mid] - qx) + Math.abs((long) ys[mid] - qy);
+            if (count < k) { // Heap not full yet: sift the new candidate up
+                int i = count++;
+                while (i > 0 && greater(dist, ids[mid], heapDist[(i - 1) >>> 1], heapId[(i - 1) >>> 1])) {
+                    heapDist[i] = heapDist[(i - 1) >>> 1];
+                    heapId[i] = heapId[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heapDist[i] = dist;
+                heapId[i] = ids[mid];
+            } else if (greater(heapDist[0], heapId[0], dist, ids[mid])) {
+                siftDown(heapDist, heapId, count, dist, ids[mid]); // Replace the worst candidate
+            }
+            top = pushChildren(scratch, top, lo, mid, hi, depth, qx, qy, scratch.stackBound[top]);
+        }
+        // Pop the max-heap from the back of out so the closest point comes first
+        for (int n = count; n > 0; n--) {
+            out[n - 1] = heapId[0];
+            if (n > 1)
+                siftDown(heapDist, heapId, n - 1, heapDist[n - 1], heapId[n - 1]);
+        }
+        return count;
+    }
+
+    // Passes the index of every point within the given L1 radius of (qx, qy) to the visitor and
+    // returns how many there were. Points are visited in tree order, not by distance.
+    int range(int qx, int qy, long radius, IntConsumer visitor) {
+        return range(qx, qy, radius, visitor, new Scratch(1));
+    }
+
+    // Allocation-free form of range using the caller's scratch space
+    int range(int qx, int qy, long radius, IntConsumer visitor, Scratch scratch) {
+        int count = 0;
+        int top = push(scratch, 0, 0, size, 0, 0);
+        while (top > 0) {
+            top--;
+            int lo = scratch.stackLo[top], hi = scratch.stackHi[top], depth = scratch.stackDepth[top];
+            if (lo >= hi || scratch.stackBound[top] > radius)
+                continue;
+            int mid = (lo + hi) >>> 1;
+            if (Math.abs((long) xs[mid] - qx) + Math.abs((long) ys[mid] - qy) <= radius) {
+                visitor.accept(ids[mid]);
+                count++;
+            }
+            top = pushChildren(scratch, top, lo, mid, hi, depth, qx, qy, scratch.stackBound[top]);
+        }
+        return count;
+    }
+
+    // Pushes both children of the node at mid, the far one first so the near one is visited
+    // first. A child's bound is the distance from the query to the splitting line on the side
+    // the child lies, which is a lower bound on the L1 distance to anything inside it.
+    private int pushChildren(Scratch scratch, int top, int lo, int mid, int hi, int depth, int qx, int qy, long bound) {
+        long diff = (depth & 1) == 0 ? (long) qx - xs[mid] : (long) qy - ys[mid];
+        long farBound = Math.max(bound, Math.abs(diff));
+        if (diff < 0) { // Query lies before the split: the lower half is near
+            top = push(scratch, top, mid + 1, hi, depth + 1, farBound);
+            top = push(scratch, top, lo, mid, depth + 1, bound);
+        } else {
+            top = push(scratch, top, lo, mid, depth + 1, farBound);
+            top = push(scratch, top, mid + 1, hi, depth + 1, bound);
+        }
+        return top;
+    }
+
+    private static int push(Scratch scratch, int top, int lo, int hi, int depth, long bound) {
+        scratch.stackLo[top] = lo;
+        scratch.stackHi[top] = hi;
+        scratch.stackDepth[top] = depth;
+        scratch.stackBound[top] = bound;
+        return top + 1;
+    }
+
+    // Orders candidates by distance, then by index
+    private static boolean greater(long distA, int idA, long distB, int idB) {
+        return distA > distB || (distA == distB && idA > idB);
+    }
+
+    // Places (dist, id) at the root of the max-heap of the given size and sifts it down
+    private static void siftDown(long[] heapDist, int[] heapId, int count, long dist, int id) {
+        int i = 0;
+        while (2 * i + 1 < count) {
+            int child = 2 * i + 1;
+            if (child + 1 < count && greater(heapDist[child + 1], heapId[child + 1], heapDist[child], heapId[child]))
+                child++;
+            if (!greater(heapDist[child], heapId[child], dist, id))
+                break;
+            heapDist[i] = heapDist[child];
+            heapId[i] = heapId[child];
+            i = child;
+        }
+        heapDist[i] = dist;
+        heapId[i] = id;
+    }
+
+    // Arranges [lo, hi) so its median on the depth's axis sits in the middle, then recurses
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1)
+            return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0 ? xs : ys);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    // Quickselect: puts the k-th smallest key of [left, right] at k, smaller keys before it and
+    // larger keys after it
+    private void select(int left, int right, int k, int[] keys) {
+        while (right > left) {
+            int pivot = keys[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) { // Hoare partition around the pivot value
+                while (keys[i] < pivot)
+                    i++;
+                while (keys[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(i++, j--);
+            }
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return; // k landed between the partitions, which hold only the pivot value
+        }
+    }
+
+    private void swap(int a, int b) {
+        int t = xs[a];
+        xs[a] = xs[b];
+        xs[b] = t;
+        t = ys[a];
+        ys[a] = ys[b];
+        ys[b] = t;
+        t = ids[a];
+        ids[a] = ids[b];
+        ids[b] = t;
+    }
+}
+
+// Closest pair of a changing point set under L1, with the same index tie-break as
+// findClosestPair. Every live point p holds an entry (p, nn[p]): its nearest neighbour among the
+// points that existed when the entry was computed. For every live pair at least one endpoint's
+// entry was computed after both points reached their current position, so the smallest entry is
+// the closest pair; all entries sit in an indexed min-heap whose top is returned in O(1).
+// Inserting or moving a point computes its own entry; removing or moving a point recomputes only
+// the entries that pointed at it, found through per-point reverse lists. Nearest-neighbour queries
+// run on k-d trees kept in the logarithmic method (level i holds up to 2^i entries and full
+// levels merge upwards), and entries left behind by removals and moves are skipped by a filter
+// until they outnumber the live points, at which point everything is rebuilt. Typical events cost
+// polylogarithmic amortized time.
+class DynamicClosestPair {
+    private int[] xs = new int[16], ys = new int[16]; // Current coordinates by point id
+    private boolean[] alive = new boolean[16];
+    private int[] nn = new int[16]; // Neighbour in each point's entry, -1 when it has none
+    private long[] nnDist = new long[16];
+    private int[] revHead = new int[16], revNext = new int[16], revPrev = new int[16]; // Points whose entry names a point
+    private int[] heap = new int[16], heapPos = new int[16]; // Indexed min-heap of point ids by entry
+    private int heapSize, created, live, stale; // stale counts tree entries that no longer match a live point
+    private ManhattanKdTree[] levels = new ManhattanKdTree[32]; // Logarithmic method: levels[i] holds up to 2^i entries
+    private final ManhattanKdTree.Scratch scratch = new ManhattanKdTree.Scratch(1);
+    private int excluded = -1; // Point left out of the current nearest-neighbour query
+    private final ManhattanKdTree.PointFilter current = // Accepts tree entries that are still up to date
+            (id, x, y) -> id != excluded && alive[id] && xs[id] == x && ys[id] == y;
+
+    // Adds a point and returns its id; ids are assigned 0, 1, 2, ... in insertion order
+    int insert(int x, int y) {
+        int id = created++;
+        ensureCapacity(created);
+        xs[id] = x;
+        ys[id] = y;
+        alive[id] = true;
+        nn[id] = -1;
+        revHead[id] = -1;
+        heapPos[id] = -1;
+        live++;
+        addToIndex(id);
+        refresh(id);
+        return id;
+    }
+
+    // Removes a live point
+    void remove(int id) {
+        checkLive(id);
+        alive[id] = false;
+        live--;
+        stale++; // Its tree entry no longer matches a live point
+        setNeighbour(id, -1, 0);
+        refreshDependents(id);
+        compactIfStale();
+    }
+
+    // Moves a live point to new coordinates, keeping its id
+    void move(int id, int x, int y) {
+        checkLive(id);
+        xs[id] = x;
+        ys[id] = y;
+        stale++; // The tree entry at the old position is now out of date
+        addToIndex(id);
+        refresh(id);
+        refreshDependents(id); // Entries naming this point now hold an outdated distance
+        compactIfStale();
+    }
+
+    // Closest pair {i, j} with i < j, or null when fewer than two points are alive
+    int[] closest() {
+        return heapSize == 0 ? null : new int[] { closestFirst(), closestSecond() };
+    }
+
+    // Smaller index of the closest pair (heap must not be empty)
+    int closestFirst() {
+        int p = heap[0];
+        return Math.min(p, nn[p]);
+    }
+
+    // Larger index of the closest pair (heap must not be empty)
+    int closestSecond() {
+        int p = heap[0];
+        return Math.max(p, nn[p]);
+    }
+
+    // Distance of the closest pair, or -1 when fewer than two points are alive
+    long closestDistance() {
+        return heapSize == 0 ? -1 : nnDist[heap[0]];
+    }
+
+    int size() {
+        return live;
+    }
+
+    // Recomputes the entry of point p from every live point
+    private void refresh(int p) {
+        long bestDist = Long.MAX_VALUE;
+        int bestId = -1;
+        excluded = p;
+        for (ManhattanKdTree tree : levels) {
+            if (tree == null)
+                continue;
+            int id = tree.nearest(xs[p], ys[p], scratch, current);
+            if (id >= 0 && (scratch.distance() < bestDist || (scratch.distance() == bestDist && id < bestId))) {
+                bestDist = scratch.distance();
+                bestId = id;
+            }
+        }
+        excluded = -1;
+        setNeighbour(p, bestId, bestDist);
+    }
+
+    // Recomputes every entry that names point q
+    private void refreshDependents(int q) {
+        for (int p = revHead[q]; p != -1; ) {
+            int next = revNext[p]; // refresh() relinks p into another list
+            refresh(p);
+            p = next;
+        }
+    }
+
+    // Replaces the entry of p, keeping the reverse lists and the heap in step
+    private void setNeighbour(int p, int neighbour, long dist) {
+        if (nn[p] != -1) { // Unlink p from the reverse list of its old neighbour
+            if (revPrev[p] != -1)
+                revNext[revPrev[p]] = revNext[p];
+            else
+                revHead[nn[p]] = revNext[p];
+            if (revNext[p] != -1)
+                revPrev[revNext[p]] = revPrev[p];
+        }
+        nn[p] = neighbour;
+        nnDist[p] = dist;
+        if (neighbour != -1) { // Link p at the head of its new neighbour's list
+            revPrev[p] = -1;
+            revNext[p] = revHead[neighbour];
+            if (revHead[neighbour] != -1)
+                revPrev[revHead[neighbour]] = p;
+            revHead[neighbour] = p;
+        }
+        if (heapPos[p] != -1)
+            heapRemove(p);
+        if (neighbour != -1)
+            heapAdd(p);
+    }
+
+    // Adds the current position of a point to the trees, merging full levels upwards
+    private void addToIndex(int id) {
+        int level = 0, count = 1;
+        while (levels[level] != null)
+            count += levels[level++].size();
+        int[] bx = new int[count], by = new int[count], bid = new int[count];
+        int n = 0;
+        bx[n] = xs[id];
+        by[n] = ys[id];
+        bid[n++] = id;
+        for (int i = 0; i < level; i++) {
+            n = collect(levels[i], bx, by, bid, n);
+            levels[i] = null;
+        }
+        levels[level] = new ManhattanKdTree(bx, by, bid, n);
+    }
+
+    // Rebuilds all trees from the live points once outdated entries outnumber them
+    private void compactIfStale() {
+        if (stale <= live)
+            return;
+        int count = 0;
+        for (ManhattanKdTree tree : levels)
+            count += tree == null ? 0 : tree.size();
+        int[] bx = new int[count], by = new int[count], bid = new int[count];
+        int n = 0;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null)
+                n = collect(levels[i], bx, by, bid, n);
+            levels[i] = null;
+        }
+        int level = 0;
+        while ((1L << level) < n)
+            level++;
+        levels[level] = new ManhattanKdTree(bx, by, bid, n);
+        stale = 0;
+    }
+
+    // Appends the up-to-date entries of a tree to the buffers and returns the new count
+    private int collect(ManhattanKdTree tree, int[] bx, int[] by, int[] bid, int n) {
+        for (int i = 0; i < tree.size(); i++) {
+            if (current.accept(tree.idAt(i), tree.xAt(i), tree.yAt(i))) {
+                bx[n] = tree.xAt(i);
+                by[n] = tree.yAt(i);
+                bid[n++] = tree.idAt(i);
+            } else {
+                stale--; // The outdated entry is dropped here
+            }
+        }
+        return n;
+    }
+
+    // Orders heap entries by distance, then by the pair's smaller and larger index
+    private boolean less(int p, int q) {
+        if (nnDist[p] != nnDist[q])
+            return nnDist[p] < nnDist[q];
+        int lowP = Math.min(p, nn[p]), lowQ = Math.min(q, nn[q]);
+        if (lowP != lowQ)
+            return lowP < lowQ;
+        return Math.max(p, nn[p]) < Math.max(q, nn[q]);
+    }
+
+    private void heapAdd(int p) {
+        heap[heapSize] = p;
+        heapPos[p] = heapSize++;
+        siftUp(heapPos[p]);
+    }
+
+    private void heapRemove(int p) {
+        int i = heapPos[p], last = heap[--heapSize];
+        heapPos[p] = -1;
+        if (i == heapSize)
+            return; // p was the last element
+        heap[i] = last;
+        heapPos[last] = i;
+        siftUp(i);
+        siftDown(heapPos[last]);
+    }
+
+    private void siftUp(int i) {
+        int p = heap[i];
+        while (i > 0 && less(p, heap[(i - 1) >>> 1])) {
+            heap[i] = heap[(i - 1) >>> 1];
+            heapPos[heap[i]] = i;
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = p;
+        heapPos[p] = i;
+    }
+
+    private void siftDown(int i) {
+        int p = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child]))
+                child++;
+            if (!less(heap[child], p))
+                break;
+            heap[i] = heap[child];
+            heapPos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = p;
+        heapPos[p] = i;
+    }
+
+    private void checkLive(int id) {
+        if (id < 0 || id >= created || !alive[id])
+            throw new IllegalArgumentException("no live point with id " + id);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= xs.length)
+            return;
+        int capacity = Math.max(needed, xs.length * 2);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+        nn = Arrays.copyOf(nn, capacity);
+        nnDist = Arrays.copyOf(nnDist, capacity);
+        revHead = Arrays.copyOf(revHead, capacity);
+        revNext = Arrays.copyOf(revNext, capacity);
+        revPrev = Arrays.copyOf(revPrev, capacity);
+        heap = Arrays.copyOf(heap, capacity);
+        heapPos = Arrays.copyOf(heapPos, capacity);
+    }
+}
+
+// Binary point files: a sequence of (x, y) pairs of little-endian int32 values, where a point's
+// index is its position in the file. Files are read through memory-mapped windows.
+// The external closest-pair mode works in four phases, each holding at most chunkPoints points:
+//  1. cut the input into chunks, sort each chunk by x and write it as a run of (x, y, index) records;
+//  2. merge the runs into one file sorted by x;
+//  3. solve every chunk of the sorted file in memory with ManhattanClosestPair;
+//  4. for every chunk boundary, load the records whose x lies within the best distance of the
+//     boundary and check them in y order, which covers every pair that spans chunks.
+// As in the in-memory engine, all comparisons are inclusive, so the index tie-break is exact.
+// Boundary strips are assumed to fit on the heap, which holds unless very many points share
+// nearly the same x coordinate.
+class PointFile {
+    private static final int POINT_BYTES = 2 * Integer.BYTES; // (x, y) in the input format
+    private static final int RECORD_BYTES = 3 * Integer.BYTES; // (x, y, index) in runs and the sorted file
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    // Reads every point of a file into {x_coords, y_coords}
+    static int[][] load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = channel.size() / POINT_BYTES;
+            if (count > Integer.MAX_VALUE - 8)
+                throw new IOException("too many points to load on the heap: " + count);
+            int[] xs = new int[(int) count], ys = new int[(int) count];
+            long window = (Integer.MAX_VALUE / POINT_BYTES) * (long) POINT_BYTES; // Largest point-aligned mapping
+            int n = 0;
+            for (long offset = 0; offset < count * POINT_BYTES; offset += window) {
+                ByteBuffer buffer = map(channel, offset, Math.min(window, count * POINT_BYTES - offset));
+                while (buffer.hasRemaining()) {
+                    xs[n] = buffer.getInt();
+                    ys[n++] = buffer.getInt();
+                }
+            }
+            return new int[][] { xs, ys };
+        }
+    }
+
+    // Writes points in the file format
+    static void write(Path file, int[] xs, int[] ys) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < xs.length; i++) {
+                if (buffer.remaining() < POINT_BYTES)
+                    flush(channel, buffer);
+                buffer.putInt(xs[i]).putInt(ys[i]);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    // Closest pair {distance, i, j} of the points in the file using at most chunkPoints points
+    // in memory at a time; temporary files are created in workDir and removed afterwards
+    static long[] closestPairExternal(Path file, int chunkPoints, Path workDir) throws IOException {
+        if (chunkPoints < 2 || chunkPoints > Integer.MAX_VALUE / RECORD_BYTES)
+            throw new IllegalArgumentException("chunk size out of range: " + chunkPoints);
+        long[] best = { Long.MAX_VALUE, 0, 0 };
+        Path sorted = workDir.resolve("sorted.bin");
+        try {
+            long count = sortByX(file, chunkPoints, workDir, sorted);
+            try (FileChannel channel = FileChannel.open(sorted, StandardOpenOption.READ)) {
+                for (long start = 0; start < count; start += chunkPoints)
+                    solveChunk(channel, start, Math.min(count, start + chunkPoints), best);
+                RecordWindow window = new RecordWindow(channel, count);
+                for (long boundary = chunkPoints; boundary < count; boundary += chunkPoints)
+                    checkBoundary(channel, window, count, boundary, best);
+            }
+        } finally {
+            Files.deleteIfExists(sorted);
+        }
+        return best;
+    }
+
+    // Phases 1 and 2: writes the (x, y, index) records of the input sorted by x (ties by index)
+    // to the output file and returns the number of points; the run files never outlive the call
+    private static long sortByX(Path file, int chunkPoints, Path workDir, Path output) throws IOException {
+        long count;
+        int runs = 0;
+        try {
+            try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+                count = input.size() / POINT_BYTES;
+                if (count > Integer.MAX_VALUE)
+                    throw new IOException("point indices must fit in an int: " + count);
+                long[] keys = new long[(int) Math.min(chunkPoints, count)];
+                int[] xs = new int[keys.length], ys = new int[keys.length];
+                for (long start = 0; start < count; start += chunkPoints, runs++) {
+                    int size = (int) Math.min(chunkPoints, count - start);
+                    ByteBuffer buffer = map(input, start * POINT_BYTES, (long) size * POINT_BYTES);
+                    for (int i = 0; i < size; i++) {
+                        xs[i] = buffer.getInt();
+                        ys[i] = buffer.getInt();
+                        keys[i] = ((long) xs[i] << 32) | i; // Sort by x, then by position
+                    }
+                    Arrays.sort(keys, 0, size);
+                    try (FileChannel run = FileChannel.open(workDir.resolve("run" + runs + ".bin"),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+                        for (int k = 0; k < size; k++) {
+                            int i = (int) keys[k];
+                            if (out.remaining() < RECORD_BYTES)
+                                flush(run, out);
+                            out.putInt(xs[i]).putInt(ys[i]).putInt((int) (start + i));
+                        }
+                        flush(run, out);
+                    }
+                }
+            }
+            mergeRuns(workDir, runs, output);
+        } finally { // Also reached when a run or the merge fails part way
+            for (int r = 0; r <= runs; r++) // Includes a run that was still being written
+                Files.deleteIfExists(workDir.resolve("run" + r + ".bin"));
+        }
+        return count;
+    }
+
+    // Phase 2: k-way merge of the runs through a primitive heap of (x, index) keys
+    private static void mergeRuns(Path workDir, int runs, Path output) throws IOException {
+        FileChannel[] channels = new FileChannel[runs];
+        ByteBuffer[] heads = new ByteBuffer[runs];
+        long[] keys = new long[runs]; // x in the high half, global index in the low half
+        int[] owners = new int[runs]; // Run that each heap key came from
+        int size = 0;
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int r = 0; r < runs; r++) {
+                channels[r] = FileChannel.open(workDir.resolve("run" + r + ".bin"), StandardOpenOption.READ);
+                heads[r] = map(channels[r], 0, channels[r].size());
+                if (heads[r].hasRemaining()) {
+                    keys[size] = peekKey(heads[r]);
+                    owners[size++] = r;
+                }
+            }
+            for (int i = (size >>> 1) - 1; i >= 0; i--)
+                siftDown(keys, owners, size, i);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            while (size > 0) {
+                ByteBuffer head = heads[owners[0]];
+                if (buffer.remaining() < RECORD_BYTES)
+                    flush(out, buffer);
+                buffer.putInt(head.getInt()).putInt(head.getInt()).putInt(head.getInt());
+                if (head.hasRemaining()) {
+                    keys[0] = peekKey(head); // Same run, next record
+                } else {
+                    size--;
+                    keys[0] = keys[size];
+                    owners[0] = owners[size];
+                }
+                siftDown(keys, owners, size, 0);
+            }
+            flush(out, buffer);
+        } finally {
+            for (int r = 0; r < runs; r++)
+                if (channels[r] != null)
+                    channels[r].close();
+        }
+    }
+
+    // Phase 3: solves records [start, end) of the sorted file in memory. The records are put
+    // back in index order first, so the engine's local tie-break agrees with the global one.
+    private static void solveChunk(FileChannel channel, long start, long end, long[] best) throws IOException {
+        int size = (int) (end - start);
+        ByteBuffer buffer = map(channel, start * RECORD_BYTES, (long) size * RECORD_BYTES);
+        int[] rx = new int[size], ry = new int[size];
+        long[] byIndex = new long[size];
+        for (int i = 0; i < size; i++) {
+            rx[i] = buffer.getInt();
+            ry[i] = buffer.getInt();
+            byIndex[i] = ((long) buffer.getInt() << 32) | i; // Global index, then position
+        }
+        Arrays.sort(byIndex);
+        int[] xs = new int[size], ys = new int[size], ids = new int[size];
+        for (int k = 0; k < size; k++) {
+            int i = (int) byIndex[k];
+            xs[k] = rx[i];
+            ys[k] = ry[i];
+            ids[k] = (int) (byIndex[k] >>> 32);
+        }
+        long[] local = ManhattanClosestPair.solve(xs, ys);
+        if (local[0] != Long.MAX_VALUE)
+            ManhattanClosestPair.offer(local[0], ids[(int) local[1]], ids[(int) local[2]], best);
+    }
+
+    // Phase 4: checks every pair of records within the current best distance of the line
+    // x = x(boundary), in y order. Such records form one contiguous range of the sorted file.
+    private static void checkBoundary(FileChannel channel, RecordWindow window, long count, long boundary, long[] best)
+            throws IOException {
+        long lineX = window.x(boundary);
+        long from = boundary, to = boundary; // Grow [from, to) while records stay within reach of the line
+        while (from > 0 && lineX - window.x(from - 1) <= best[0])
+            from--;
+        while (to < count && window.x(to) - lineX <= best[0])
+            to++;
+        if (from == boundary || to == boundary)
+            return; // One side of the line has no record within reach
+        int size = (int) (to - from);
+        ByteBuffer buffer = map(channel, from * RECORD_BYTES, (long) size * RECORD_BYTES);
+        int[] xs = new int[size], ys = new int[size], ids = new int[size];
+        long[] byY = new long[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = buffer.getInt();
+            ys[i] = buffer.getInt();
+            ids[i] = buffer.getInt();
+            byY[i] = ((long) ys[i] << 32) | i; // Sort by y, then by position
+        }
+        Arrays.sort(byY);
+        for (int a = 0; a < size; a++) {
+            int p = (int) byY[a];
+            for (int b = a + 1; b < size && (long) ys[(int) byY[b]] - ys[p] <= best[0]; b++) {
+                int q = (int) byY[b];
+                long dist = Math.abs((long) xs[p] - xs[q]) + Math.abs((long) ys[p] - ys[q]);
+                ManhattanClosestPair.offer(dist, Math.min(ids[p], ids[q]), Math.max(ids[p], ids[q]), best);
+            }
+        }
+    }
+
+    // Reads x values of the sorted file through one mapped block of records, which is only
+    // remapped when a read falls outside it
+    private static final class RecordWindow {
+        private static final long BLOCK_RECORDS = 1 << 16; // Records per mapped block
+        private final FileChannel channel;
+        private final long count;
+        private MappedByteBuffer block;
+        private long first; // Record at the start of the mapped block
+
+        RecordWindow(FileChannel channel, long count) {
+            this.channel = channel;
+            this.count = count;
+        }
+
+        int x(long record) throws IOException {
+            if (block == null || record < first || record >= first + BLOCK_RECORDS) {
+                first = record / BLOCK_RECORDS * BLOCK_RECORDS;
+                block = map(channel, first * RECORD_BYTES, Math.min(BLOCK_RECORDS, count - first) * RECORD_BYTES);
+            }
+            return block.getInt((int) (record - first) * RECORD_BYTES);
+        }
+    }
+
+    // (x, index) key of the record at the buffer's position, without consuming it
+    private static long peekKey(ByteBuffer head) {
+        int position = head.position();
+        return ((long) head.getInt(position) << 32) | (head.getInt(position + 2 * Integer.BYTES) & 0xFFFFFFFFL);
+    }
+
+    private static void siftDown(long[] keys, int[] owners, int size, int i) {
+        long key = keys[i];
+        int owner = owners[i];
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (keys[child] >= key)
+                break;
+            keys[i] = keys[child];
+            owners[i] = owners[child];
+            i = child;
+        }
+        keys[i] = key;
+        owners[i] = owner;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -2,28 +2,42 @@
 // to compute the minimum cost required to connect devices by accounting for both
 // module installation fees and direct connection expenses, ensuring all devices
 // are linked at the lowest possible cost.
+// For large inputs the edges are kept as parallel int arrays (struct of arrays) and ordered with
+// an LSD radix sort on cost; the module edges from the virtual node 0 are never materialized but
+// merged in from a sorted order of the module costs, and the total is accumulated as a long.
+// ConcurrentUnionFind is a lock-free variant for unioning edges from many threads while
+// connectivity is being queried; ParallelMst builds on it to run Boruvka rounds across a
+// ForkJoinPool for the same minimum cost. IncrementalMst keeps the spanning tree in a link-cut
+// tree and repairs it after each module or connection cost change instead of recomputing.
 import java.util.*; // Import all required utilities from the java.util package
+import java.util.concurrent.*; // Thread pools for concurrent edge ingestion
+import java.util.concurrent.atomic.*; // Atomic arrays and counters for the lock-free disjoint set
+import java.util.stream.IntStream; // Parallel loops over edges and components
 
-// Class implementing the Union-Find (Disjoint Set) data structure for managing connected components
+// Class implementing the Union-Find (Disjoint Set) data structure for managing connected components.
+// A single int array holds the parent of every element, or minus the size of its set for a root.
+// find() is iterative and uses path halving, so deep trees cannot overflow the call stack, and
+// union() attaches the smaller set under the larger one.
 class UnionFind {
-    private int[] parent, rank; // Arrays to store each node's parent and the depth (rank) for optimization
+    private final int[] parent; // Parent of each element, or -(set size) when the element is a root
+    private int components; // Number of disjoint sets
 
     // Constructor to initialize the Union-Find structure for n elements
     public UnionFind(int n) {
-        parent = new int[n]; // Initialize the parent array
-        rank = new int[n]; // Initialize the rank array
-        for (int i = 0; i < n; i++) {
-            parent[i] = i; // Each element starts as its own parent
-            rank[i] = 0; // Initial rank for each element is set to zero
-        }
+        parent = new int[n];
+        reset();
     }
 
-    // Method to find the representative (root) of the set that element x belongs to, with path compression
+    // Method to find the representative (root) of the set that element x belongs to, with path halving
     public int find(int x) {
-        if (parent[x] != x) {
-            parent[x] = find(parent[x]); // Recursively update parent pointers to the root
+        while (parent[x] >= 0) {
+            int p = parent[x], grandparent = parent[p];
+            if (grandparent < 0)
+                return p; // p is the root
+            parent[x] = grandparent; // Skip a level on the way up
+            x = grandparent;
         }
-        return parent[x]; // Return the root of x
+        return x;
     }
 
     // Method to merge the sets containing x and y; returns true if a merge occurs, false if they are already connected
@@ -35,17 +49,116 @@ class UnionFind {
         if (rootX == rootY)
             return false;
 
-        // Attach the tree with lower rank to the tree with higher rank for balance
-        if (rank[rootX] > rank[rootY]) {
-            parent[rootY] = rootX; // Attach y's tree under x's root
-        } else if (rank[rootX] < rank[rootY]) {
-            parent[rootX] = rootY; // Attach x's tree under y's root
-        } else {
-            parent[rootY] = rootX; // If both ranks are equal, attach y under x
-            rank[rootX]++; // Increase the rank of the new root
+        // Attach the smaller set under the larger one; sizes are stored negated at the roots
+        if (parent[rootX] > parent[rootY]) {
+            int t = rootX;
+            rootX = rootY;
+            rootY = t;
         }
+        parent[rootX] += parent[rootY]; // Combined size
+        parent[rootY] = rootX;
+        components--;
         return true; // The union was successful
     }
+
+    // Returns true if x and y are in the same set
+    public boolean connected(int x, int y) {
+        return find(x) == find(y);
+    }
+
+    // Number of disjoint sets
+    public int componentCount() {
+        return components;
+    }
+
+    // Number of elements in the set containing x
+    public int sizeOf(int x) {
+        return -parent[find(x)];
+    }
+
+    // Puts every element back in its own set without reallocating
+    public void reset() {
+        Arrays.fill(parent, -1);
+        components = parent.length;
+    }
+}
+
+// Lock-free disjoint set for concurrent edge ingestion. Parents live in an AtomicIntegerArray and
+// only ever move closer to a root, so find() just follows them, halving the path with a CAS whose
+// failure is harmless; it never retries. union() links the root of lower priority under the other
+// with a CAS on the root's own slot and retries only if that root was linked meanwhile. Priorities
+// are a fixed pseudo-random function of the index, which keeps trees shallow like randomized
+// linking does without storing ranks. connected() is linearizable: it reports "different sets"
+// only after confirming the first root is still a root.
+class ConcurrentUnionFind {
+    private final AtomicIntegerArray parent; // Parent of each element; roots point to themselves
+    private final AtomicInteger components; // Number of disjoint sets
+
+    public ConcurrentUnionFind(int n) {
+        parent = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++)
+            parent.set(i, i); // Each element starts as its own root
+        components = new AtomicInteger(n);
+    }
+
+    // Returns the current root of x's set
+    public int find(int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x)
+                return x;
+            int grandparent = parent.get(p);
+            if (grandparent != p)
+                parent.compareAndSet(x, p, grandparent); // Path halving; losing the race is fine
+            x = grandparent;
+        }
+    }
+
+    // Merges the sets of x and y; returns true if this call performed the merge
+    public boolean union(int x, int y) {
+        while (true) {
+            int rootX = find(x), rootY = find(y);
+            if (rootX == rootY)
+                return false;
+            if (lowerPriority(rootY, rootX)) { // Always link the lower-priority root under the other
+                int t = rootX;
+                rootX = rootY;
+                rootY = t;
+            }
+            if (parent.compareAndSet(rootX, rootX, rootY)) {
+                components.decrementAndGet();
+                return true;
+            }
+            // rootX was linked by another thread in the meantime: look again
+        }
+    }
+
+    // Returns true if x and y are in the same set at the moment of the call
+    public boolean connected(int x, int y) {
+        while (true) {
+            int rootX = find(x), rootY = find(y);
+            if (rootX == rootY)
+                return true;
+            if (parent.get(rootX) == rootX)
+                return false; // rootX is still a root, so the sets really were different
+        }
+    }
+
+    // Number of disjoint sets
+    public int componentCount() {
+        return components.get();
+    }
+
+    // Fixed pseudo-random priority order over the elements, ties broken by index
+    private static boolean lowerPriority(int a, int b) {
+        int pa = mix(a), pb = mix(b);
+        return pa < pb || (pa == pb && a < b);
+    }
+
+    private static int mix(int x) {
+        x *= 0x9E3779B1; // Multiplicative hash followed by an xorshift
+        return x ^ (x >>> 16);
+    }
 }
 
 public class Q3ANetworkConnection {
@@ -85,15 +198,875 @@ public class Q3ANetworkConnection {
         return totalCost; // Return the minimum cost to connect all devices
     }
 
+    // Same result as minCostToConnectDevices, returned as a long, using primitive edge arrays and a
+    // radix sort instead of one boxed array per edge and a comparator sort
+    public static long minCostToConnectDevicesFast(int n, int[] modules, int[][] connections) {
+        int m = connections.length;
+        int[] from = new int[m], to = new int[m], cost = new int[m];
+        for (int e = 0; e < m; e++) { // Copy the connections into struct-of-arrays form
+            from[e] = connections[e][0];
+            to[e] = connections[e][1];
+            cost[e] = connections[e][2];
+        }
+        return minCostToConnectDevices(n, modules, from, to, cost);
+    }
+
+    // Kruskal over connection edges given as parallel arrays (from[e], to[e], cost[e]). The module
+    // edge (0, i + 1) of cost modules[i] is implicit: the sorted connection edges and the sorted
+    // modules are merged as two streams, preferring the module edge on equal cost.
+    static long minCostToConnectDevices(int n, int[] modules, int[] from, int[] to, int[] cost) {
+        int[] edgeOrder = radixSortOrder(cost);
+        int[] moduleOrder = radixSortOrder(modules);
+        UnionFind uf = new UnionFind(n + 1); // Devices 1..n plus the virtual node 0
+        long totalCost = 0;
+        int edgesUsed = 0, nextEdge = 0, nextModule = 0;
+        while (edgesUsed < n && (nextEdge < edgeOrder.length || nextModule < n)) {
+            boolean takeModule = nextEdge == edgeOrder.length
+                    || (nextModule < n && modules[moduleOrder[nextModule]] <= cost[edgeOrder[nextEdge]]);
+            int u, v, c;
+            if (takeModule) {
+                int device = moduleOrder[nextModule++];
+                u = 0;
+                v = device + 1;
+                c = modules[device];
+            } else {
+                int e = edgeOrder[nextEdge++];
+                u = from[e];
+                v = to[e];
+                c = cost[e];
+            }
+            if (uf.union(u, v)) {
+                totalCost += c;
+                edgesUsed++;
+            }
+        }
+        return totalCost;
+    }
+
+    // Stable LSD radix sort: returns the indices of keys in ascending key order. Three passes of
+    // 11 bits over the keys with the sign bit flipped; a pass is skipped when every key has the
+    // same digit. Keys move along with the indices so each pass reads memory sequentially.
+    static int[] radixSortOrder(int[] keys) {
+        int n = keys.length;
+        int[] order = new int[n], orderTmp = new int[n];
+        int[] sortKeys = new int[n], keysTmp = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            sortKeys[i] = keys[i] ^ Integer.MIN_VALUE; // Unsigned order now matches signed order
+        }
+        int[] counts = new int[1 << 11];
+        for (int shift = 0; shift < 32; shift += 11) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++)
+                counts[(sortKeys[i] >>> shift) & 0x7FF]++;
+            if (n == 0 || counts[(sortKeys[0] >>> shift) & 0x7FF] == n)
+                continue; // Every key shares this digit
+            for (int d = 0, sum = 0; d < counts.length; d++) { // Turn counts into start offsets
+                int c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = counts[(sortKeys[i] >>> shift) & 0x7FF]++;
+                keysTmp[slot] = sortKeys[i];
+                orderTmp[slot] = order[i];
+            }
+            int[] t = sortKeys;
+            sortKeys = keysTmp;
+            keysTmp = t;
+            t = order;
+            order = orderTmp;
+            orderTmp = t;
+        }
+        return order;
+    }
+
+    // Same result as minCostToConnectDevices computed with parallel Boruvka rounds on the pool
+    public static long minCostToConnectDevicesParallel(int n, int[] modules, int[][] connections, ForkJoinPool pool) {
+        int m = connections.length;
+        int[] from = new int[m], to = new int[m], cost = new int[m];
+        for (int e = 0; e < m; e++) {
+            from[e] = connections[e][0];
+            to[e] = connections[e][1];
+            cost[e] = connections[e][2];
+        }
+        return ParallelMst.solve(n, modules, from, to, cost, pool, false).totalCost();
+    }
+
+    // Times the list-based Kruskal against the struct-of-arrays version on random networks.
+    // Run with: java Q3ANetworkConnection --bench-mst [devices] [connections]
+    static void benchmarkMst(int n, int m) {
+        Random random = new Random(42);
+        int[] modules = new int[n];
+        for (int i = 0; i < n; i++)
+            modules[i] = random.nextInt(1_000); // Small costs keep the int total of the list version exact
+        int[][] connections = new int[m][];
+        int[] from = new int[m], to = new int[m], cost = new int[m];
+        for (int e = 0; e < m; e++) {
+            connections[e] = new int[] { 1 + random.nextInt(n), 1 + random.nextInt(n), random.nextInt(1_000) };
+            from[e] = connections[e][0];
+            to[e] = connections[e][1];
+            cost[e] = connections[e][2];
+        }
+        for (int round = 0; round < 3; round++) { // All three Kruskal variants must report the same cost
+            long start = System.nanoTime();
+            long listCost = minCostToConnectDevices(n, modules, connections);
+            long listTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            long fastCost = minCostToConnectDevicesFast(n, modules, connections);
+            long fastTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            long arrayCost = minCostToConnectDevices(n, modules, from, to, cost);
+            long arrayTime = System.nanoTime() - start;
+            System.out.printf("round %d: list-based %d (%.1f ms), copied into arrays %d (%.1f ms, %.1fx),"
+                    + " arrays given %d (%.1f ms, %.1fx)%n", round, listCost, listTime / 1e6, fastCost,
+                    fastTime / 1e6, (double) listTime / fastTime, arrayCost, arrayTime / 1e6, (double) listTime / arrayTime);
+        }
+        for (int threads : new int[] { 1, 2, 4, 8, 16 }) { // Scaling of the parallel Boruvka engine
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE, total = 0;
+            for (int round = 0; round < 3; round++) { // Keep the quickest of three Boruvka solves
+                long start = System.nanoTime();
+                total = ParallelMst.solve(n, modules, from, to, cost, pool, false).totalCost();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            System.out.printf("parallel Boruvka with %d threads: %d (%.1f ms)%n", threads, total, best / 1e6);
+        }
+    }
+
+    // Times random unions and finds on the array-packed UnionFind against the previous recursive
+    // union-by-rank implementation. Run with: java Q3ANetworkConnection --bench [elements] [operations]
+    static void benchmark(int elements, long operations) {
+        for (int round = 0; round < 3; round++) {
+            UnionFind packed = new UnionFind(elements);
+            Random random = new Random(42); // Same operation sequence for both structures
+            long start = System.nanoTime();
+            long merges = 0;
+            for (long op = 0; op < operations; op++)
+                if (packed.union(random.nextInt(elements), random.nextInt(elements)))
+                    merges++;
+            long packedTime = System.nanoTime() - start;
+
+            RecursiveUnionFind baseline = new RecursiveUnionFind(elements);
+            random = new Random(42);
+            start = System.nanoTime();
+            long baselineMerges = 0;
+            try {
+                for (long op = 0; op < operations; op++)
+                    if (baseline.union(random.nextInt(elements), random.nextInt(elements)))
+                        baselineMerges++;
+                System.out.printf("round %d: packed %d merges (%.1f ms), recursive %d merges (%.1f ms)%n", round,
+                        merges, packedTime / 1e6, baselineMerges, (System.nanoTime() - start) / 1e6);
+            } catch (StackOverflowError e) {
+                System.out.printf("round %d: packed %d merges (%.1f ms), recursive overflowed the stack%n",
+                        round, merges, packedTime / 1e6);
+            }
+        }
+    }
+
+    // The previous UnionFind, kept only as the benchmark baseline
+    private static final class RecursiveUnionFind {
+        private final int[] parent, rank;
+
+        RecursiveUnionFind(int n) {
+            parent = new int[n];
+            rank = new int[n];
+            for (int i = 0; i < n; i++)
+                parent[i] = i;
+        }
+
+        int find(int x) {
+            if (parent[x] != x)
+                parent[x] = find(parent[x]);
+            return parent[x];
+        }
+
+        boolean union(int x, int y) {
+            int rootX = find(x), rootY = find(y);
+            if (rootX == rootY)
+                return false;
+            if (rank[rootX] > rank[rootY]) {
+                parent[rootY] = rootX;
+            } else if (rank[rootX] < rank[rootY]) {
+                parent[rootX] = rootY;
+            } else {
+                parent[rootY] = rootX;
+                rank[rootX]++;
+            }
+            return true;
+        }
+    }
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--bench")) { // Time the disjoint-set structures
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000,
+                    args.length > 2 ? Long.parseLong(args[2]) : 100_000_000L);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--bench-mst")) { // Time the Kruskal and Boruvka solvers
+            benchmarkMst(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000);
+            return;
+        }
+
         int n = 3; // Total number of devices
         int[] modules = { 1, 2, 2 }; // Installation costs for each device's module
         int[][] connections = { { 1, 2, 1 }, { 2, 3, 1 } }; // Costs for direct connections between devices
 
         // Compute and display the minimum cost required to connect all devices
         System.out.println(minCostToConnectDevices(n, modules, connections)); // Expected output: 3
+        System.out.println(minCostToConnectDevicesFast(n, modules, connections)); // Expected output: 3
+        System.out.println(minCostToConnectDevicesParallel(n, modules, connections, ForkJoinPool.commonPool())); // Expected output: 3
+        ParallelMst.Result mst = ParallelMst.solve(n, modules, new int[] { 1, 2 }, new int[] { 2, 3 }, new int[] { 1, 1 },
+                ForkJoinPool.commonPool(), true);
+        System.out.println(mst.describe()); // Expected output: 3 = module 1 + link #0 + link #1
+
+        // The disjoint set reports its components and can be reused after a reset
+        UnionFind uf = new UnionFind(5);
+        uf.union(0, 1);
+        uf.union(1, 2);
+        System.out.println(uf.componentCount() + " " + uf.sizeOf(2)); // Expected output: 3 3
+        uf.reset();
+        System.out.println(uf.componentCount() + " " + uf.sizeOf(2)); // Expected output: 5 1
+
+        // Stress the lock-free disjoint set and compare it with the sequential one
+        try {
+            System.out.println("Concurrent union-find matches sequential: " + stressConcurrentUnionFind(4, 20_000, 50_000));
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Maintain the spanning tree under daily price changes and compare with full recomputes
+        IncrementalMst network = new IncrementalMst(n, modules, connections);
+        network.updateModuleCost(1, 5); // Device 1 is now cheaper to reach through device 2
+        System.out.println(network.totalCost()); // Expected output: 4
+        int link = network.addConnection(1, 3, 0);
+        System.out.println(network.totalCost()); // Expected output: 3
+        network.removeConnection(link);
+        System.out.println(network.totalCost()); // Expected output: 4
+        System.out.println("Incremental MST matches recompute: " + checkIncrementalMst(40, 20_000, 11));
+    }
+
+    // Applies random module and connection changes to an IncrementalMst and recomputes the
+    // minimum cost from scratch after each one
+    static boolean checkIncrementalMst(int n, int operations, long seed) {
+        Random random = new Random(seed);
+        int[] modules = new int[n];
+        for (int i = 0; i < n; i++)
+            modules[i] = random.nextInt(100);
+        List<int[]> live = new ArrayList<>(); // {id, from, to, cost} of the connections in the solver
+        IncrementalMst solver = new IncrementalMst(n, modules, new int[0][]);
+        boolean ok = true;
+        for (int op = 0; op < operations; op++) {
+            int kind = random.nextInt(4);
+            if (kind == 0) {
+                int device = 1 + random.nextInt(n), cost = random.nextInt(100);
+                modules[device - 1] = cost;
+                solver.updateModuleCost(device, cost);
+            } else if (kind == 1 || live.isEmpty()) {
+                int from = 1 + random.nextInt(n), to = 1 + random.nextInt(n), cost = random.nextInt(100);
+                live.add(new int[] { solver.addConnection(from, to, cost), from, to, cost });
+            } else if (kind == 2) {
+                int[] removed = live.remove(random.nextInt(live.size()));
+                solver.removeConnection(removed[0]);
+            } else {
+                int[] changed = live.get(random.nextInt(live.size()));
+                changed[3] = random.nextInt(100);
+                solver.updateConnectionCost(changed[0], changed[3]);
+            }
+            int[][] connections = new int[live.size()][];
+            for (int e = 0; e < connections.length; e++)
+                connections[e] = Arrays.copyOfRange(live.get(e), 1, 4);
+            ok &= solver.totalCost() == minCostToConnectDevicesFast(n, modules, connections);
+        }
+        return ok;
+    }
+
+    // Unions random edges from several threads while a checker thread repeatedly queries pairs
+    // that an earlier check found connected (they must stay connected), then compares the final
+    // sets and component count with a sequential UnionFind fed the same edges
+    static boolean stressConcurrentUnionFind(int threads, int elements, int edgesPerThread)
+            throws InterruptedException, ExecutionException {
+        int[][] edges = new int[threads * edgesPerThread][];
+        Random random = new Random(42);
+        for (int i = 0; i < edges.length; i++)
+            edges[i] = new int[] { random.nextInt(elements), random.nextInt(elements) };
+
+        ConcurrentUnionFind concurrent = new ConcurrentUnionFind(elements);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * edgesPerThread;
+            results.add(pool.submit(() -> {
+                for (int i = first; i < first + edgesPerThread; i++)
+                    concurrent.union(edges[i][0], edges[i][1]);
+                return true;
+            }));
+        }
+        Future<Boolean> checker = pool.submit(() -> { // Connectivity must never be lost once observed
+            Random picks = new Random(7);
+            int[] seenA = new int[1024], seenB = new int[1024];
+            int seen = 0;
+            boolean consistent = true;
+            while (!done.get()) {
+                int a = picks.nextInt(elements), b = picks.nextInt(elements);
+                if (concurrent.connected(a, b) && seen < seenA.length) {
+                    seenA[seen] = a;
+                    seenB[seen++] = b;
+                }
+                for (int i = 0; i < seen; i++)
+                    consistent &= concurrent.connected(seenA[i], seenB[i]);
+            }
+            return consistent;
+        });
+        boolean ok = true;
+        for (Future<Boolean> result : results)
+            ok &= result.get();
+        done.set(true);
+        ok &= checker.get();
+        pool.shutdown();
+
+        UnionFind sequential = new UnionFind(elements);
+        for (int[] edge : edges)
+            sequential.union(edge[0], edge[1]);
+        ok &= sequential.componentCount() == concurrent.componentCount();
+        int[] rootMap = new int[elements]; // Sequential root -> concurrent root; with equal counts this is a bijection
+        Arrays.fill(rootMap, -1);
+        for (int i = 0; i < elements; i++) {
+            int rootS = sequential.find(i), rootC = concurrent.find(i);
+            if (rootMap[rootS] == -1)
+                rootMap[rootS] = rootC;
+            ok &= rootMap[rootS] == rootC;
+        }
+        return ok;
     }
 }
 
 // Expected Output:
 // 3
+// 3
+// 3
+// 3 = module 1 + link #0 + link #1
+// 3 3
+// 5 1
+// Concurrent union-find matches sequential: true
+// 4
+// 3
+// 4
+// Incremental MST matches recompute: true
+
+// Parallel Boruvka engine for the device network. Edge ids 0..m-1 are the connections and
+// m..m+n-1 the module edges (0, i + 1), which are generated from modules[] on the fly. Edges are
+// ordered by the packed key (cost << 32 | id), a strict total order, so the minimum spanning tree
+// is unique and its cost equals the one Kruskal finds. Each round every component picks its
+// cheapest outgoing edge with a CAS-min over an AtomicLongArray, the picked edges are unioned in
+// a ConcurrentUnionFind, and edges that became internal are filtered out of the next round.
+// There are at most log2(n + 1) rounds, and every loop inside a round runs as a parallel stream
+// on the caller's pool.
+class ParallelMst {
+    // Total cost and, when requested, the chosen edge ids
+    static final class Result {
+        private final long totalCost;
+        private final int[] edges; // Chosen edge ids, or null when they were not collected
+        private final int connectionCount; // Ids from here on are module edges
+
+        Result(long totalCost, int[] edges, int connectionCount) {
+            this.totalCost = totalCost;
+            this.edges = edges;
+            this.connectionCount = connectionCount;
+        }
+
+        long totalCost() {
+            return totalCost;
+        }
+
+        // Chosen edge ids: below connectionCount() a connection index, otherwise the module of
+        // device id - connectionCount() (0-based)
+        int[] edges() {
+            return edges;
+        }
+
+        int connectionCount() {
+            return connectionCount;
+        }
+
+        // Readable summary of the chosen edges: modules first, then links by connection index
+        String describe() {
+            StringBuilder text = new StringBuilder().append(totalCost).append(" =");
+            String separator = " ";
+            for (int e : edges) {
+                if (e >= connectionCount) {
+                    text.append(separator).append("module ").append(e - connectionCount + 1);
+                    separator = " + ";
+                }
+            }
+            int[] links = Arrays.stream(edges).filter(e -> e < connectionCount).sorted().toArray();
+            for (int e : links) {
+                text.append(separator).append("link #").append(e);
+                separator = " + ";
+            }
+            return text.toString();
+        }
+    }
+
+    // Minimum cost to connect devices 1..n given module costs and connections as parallel arrays
+    static Result solve(int n, int[] modules, int[] from, int[] to, int[] cost, ForkJoinPool pool, boolean collectEdges) {
+        int m = cost.length;
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(n + 1);
+        AtomicLongArray cheapest = new AtomicLongArray(n + 1); // Cheapest outgoing key per component root
+        int[] chosen = collectEdges ? new int[n] : null;
+        AtomicInteger chosenCount = new AtomicInteger();
+        LongAdder total = new LongAdder();
+
+        int[] active = pool.submit(() -> IntStream.range(0, m + n).parallel()
+                .filter(e -> source(e, m, from) != target(e, m, to)).toArray()).join();
+        while (chosenCount.get() < n && active.length > 0) {
+            int[] edges = active;
+            pool.submit(() -> {
+                IntStream.rangeClosed(0, n).parallel().forEach(v -> cheapest.set(v, Long.MAX_VALUE));
+                IntStream.range(0, edges.length).parallel().forEach(i -> { // Each component's cheapest edge
+                    int e = edges[i];
+                    long key = ((long) edgeCost(e, m, modules, cost) << 32) | e;
+                    lowerTo(cheapest, uf.find(source(e, m, from)), key);
+                    lowerTo(cheapest, uf.find(target(e, m, to)), key);
+                });
+                IntStream.rangeClosed(0, n).parallel().forEach(v -> { // Link along the picked edges
+                    long key = cheapest.get(v);
+                    if (key == Long.MAX_VALUE)
+                        return;
+                    int e = (int) key;
+                    if (uf.union(source(e, m, from), target(e, m, to))) {
+                        total.add(key >> 32);
+                        int slot = chosenCount.getAndIncrement();
+                        if (chosen != null)
+                            chosen[slot] = e;
+                    }
+                });
+            }).join();
+            active = pool.submit(() -> IntStream.of(edges).parallel() // Drop edges inside one component
+                    .filter(e -> uf.find(source(e, m, from)) != uf.find(target(e, m, to)))
+                    .toArray()).join();
+        }
+        return new Result(total.sum(), chosen == null ? null : Arrays.copyOf(chosen, chosenCount.get()), m);
+    }
+
+    // First endpoint of an edge: the connection's source, or the virtual node 0 for module edges
+    private static int source(int e, int m, int[] from) {
+        return e < m ? from[e] : 0;
+    }
+
+    // Second endpoint of an edge: the connection's target, or device i + 1 for module edge m + i
+    private static int target(int e, int m, int[] to) {
+        return e < m ? to[e] : e - m + 1;
+    }
+
+    private static int edgeCost(int e, int m, int[] modules, int[] cost) {
+        return e < m ? cost[e] : modules[e - m];
+    }
+
+    // Atomically replaces slot with key if key is smaller
+    private static void lowerTo(AtomicLongArray slots, int slot, long key) {
+        long current = slots.get(slot);
+        while (key < current && !slots.compareAndSet(slot, current, key))
+            current = slots.get(slot);
+    }
+}
+
+// Minimum spanning tree over devices 1..n and the virtual node 0 that is kept up to date as
+// module and connection costs change. The tree lives in a link-cut tree in which every edge is
+// a node of its own, so the most expensive edge on the tree path between two devices is found
+// in O(log n) amortized time.
+//  - Cycle property: a new or cheaper edge replaces the most expensive edge on the path between
+//    its endpoints if it is cheaper than that edge.
+//  - Cut property: when a tree edge is removed or gets more expensive it is cut out, and the
+//    cheapest non-tree edge that reconnects the two halves goes back in. The halves are grown
+//    from both endpoints in lockstep over the incidence lists, so only the smaller half and its
+//    edges are scanned; for a typical edit that is a small subtree rather than the whole network.
+// Every device always has its module edge, so the graph stays connected and a replacement
+// always exists. Edges are ordered by (cost << 32 | id), so ties never make the tree ambiguous.
+// Edge ids 0..n-1 are the module edges of devices 1..n and connections get ids from n on.
+class IncrementalMst {
+    private final int n; // Number of devices
+    private int edgeCount; // Ids handed out so far, module edges included
+    private int[] from, to, cost; // Endpoints and cost of every edge id
+    private byte[] state; // REMOVED, TREE or SPARE per edge id
+    private long totalCost; // Cost of the current spanning tree
+
+    // Live edges incident to each vertex; slot[2 * e] and slot[2 * e + 1] locate edge e in the
+    // lists of its two endpoints so it can be removed in O(1). Self-loops are left out.
+    private final int[][] incident;
+    private final int[] degree;
+    private int[] slot;
+    private final int[][] half = new int[2][]; // Vertex queues of the two halves of a cut
+    private final int[] queued = new int[2]; // Vertices queued in each half
+    private final int[] head = new int[2], next = new int[2]; // Queue position and incidence index per half
+    private final int[] seen; // Last mark given to each vertex while growing the halves
+    private int mark; // Even marks tag the first half, odd marks the second
+
+    private static final byte REMOVED = 0, TREE = 1, SPARE = 2;
+
+    // Link-cut tree over vertices 0..n and one node per edge at n + 1 + id
+    private int[] left, right, up; // Splay children, and the splay parent or path-parent
+    private boolean[] flipped; // Pending subtree reversal
+    private long[] key; // Edge key for edge nodes, Long.MIN_VALUE for vertices
+    private int[] heaviest; // Node with the largest key in the splay subtree
+    private int[] stack; // Scratch for pushing reversals down before a splay
+
+    IncrementalMst(int n, int[] modules, int[][] connections) {
+        if (modules.length != n)
+            throw new IllegalArgumentException("expected " + n + " module costs: " + modules.length);
+        this.n = n;
+        int capacity = Math.max(4, n + connections.length);
+        from = new int[capacity];
+        to = new int[capacity];
+        cost = new int[capacity];
+        state = new byte[capacity];
+        slot = new int[2 * capacity];
+        incident = new int[n + 1][];
+        degree = new int[n + 1];
+        for (int v = 0; v <= n; v++)
+            incident[v] = new int[v == 0 ? n : 2];
+        half[0] = new int[n + 1];
+        half[1] = new int[n + 1];
+        seen = new int[n + 1];
+        int nodes = n + 1 + capacity;
+        left = new int[nodes];
+        right = new int[nodes];
+        up = new int[nodes];
+        flipped = new boolean[nodes];
+        key = new long[nodes];
+        heaviest = new int[nodes];
+        stack = new int[nodes];
+        for (int v = 0; v <= n; v++)
+            initNode(v, Long.MIN_VALUE);
+        for (int device = 1; device <= n; device++)
+            insert(newEdge(0, device, modules[device - 1]));
+        for (int[] connection : connections)
+            addConnection(connection[0], connection[1], connection[2]);
+    }
+
+    long totalCost() {
+        return totalCost;
+    }
+
+    // Changes the module cost of a device (1-based)
+    void updateModuleCost(int device, int newCost) {
+        if (device < 1 || device > n)
+            throw new IllegalArgumentException("device must be between 1 and " + n + ": " + device);
+        updateCost(device - 1, newCost);
+    }
+
+    // Adds a connection between two devices and returns its id
+    int addConnection(int a, int b, int linkCost) {
+        if (a < 1 || a > n || b < 1 || b > n)
+            throw new IllegalArgumentException("devices must be between 1 and " + n + ": " + a + ", " + b);
+        int e = newEdge(a, b, linkCost);
+        insert(e);
+        return e;
+    }
+
+    // Removes a connection previously returned by addConnection
+    void removeConnection(int id) {
+        checkConnection(id);
+        detach(id);
+        boolean inTree = state[id] == TREE;
+        state[id] = REMOVED;
+        if (inTree) {
+            cutEdge(id);
+            reconnect(from[id], to[id]);
+        }
+    }
+
+    void updateConnectionCost(int id, int newCost) {
+        checkConnection(id);
+        updateCost(id, newCost);
+    }
+
+    private void checkConnection(int id) {
+        if (id < n || id >= edgeCount || state[id] == REMOVED)
+            throw new IllegalArgumentException("no such connection: " + id);
+    }
+
+    private void updateCost(int e, int newCost) {
+        int oldCost = cost[e];
+        if (state[e] == SPARE) {
+            cost[e] = newCost;
+            key[n + 1 + e] = edgeKey(e); // A spare edge's node is not linked to anything
+            if (newCost < oldCost)
+                insert(e); // Cheaper: may now beat the heaviest edge on its cycle
+        } else if (newCost <= oldCost) { // A cheaper tree edge stays in the tree
+            int node = n + 1 + e;
+            access(node);
+            cost[e] = newCost;
+            key[node] = edgeKey(e);
+            update(node);
+            totalCost += (long) newCost - oldCost;
+        } else { // A dearer tree edge competes with the spare edges across its cut
+            cutEdge(e);
+            cost[e] = newCost;
+            key[n + 1 + e] = edgeKey(e);
+            state[e] = SPARE;
+            reconnect(from[e], to[e]);
+        }
+    }
+
+    // Puts a live edge into the tree if the cycle property allows, otherwise marks it spare
+    private void insert(int e) {
+        int a = from[e], b = to[e];
+        if (findRoot(a) != findRoot(b)) {
+            linkEdge(e);
+            return;
+        }
+        makeRoot(a);
+        access(b);
+        int worst = heaviest[b];
+        if (key[worst] > edgeKey(e)) { // Swap out the heaviest edge on the cycle
+            int old = worst - n - 1;
+            cutEdge(old);
+            state[old] = SPARE;
+            linkEdge(e);
+        } else {
+            state[e] = SPARE;
+        }
+    }
+
+    // After the tree edge between a and b is cut, links the cheapest spare edge across the cut
+    private void reconnect(int a, int b) {
+        int side = smallerHalf(a, b), halfMark = mark + side;
+        int[] vertices = half[side];
+        int best = -1;
+        for (int i = 0; i < queued[side]; i++) { // Every edge leaving the smaller half crosses the cut
+            int v = vertices[i];
+            for (int k = 0; k < degree[v]; k++) {
+                int e = incident[v][k];
+                if (state[e] == SPARE && seen[from[e] ^ to[e] ^ v] != halfMark && (best == -1 || edgeKey(e) < edgeKey(best)))
+                    best = e;
+            }
+        }
+        if (best == -1)
+            throw new IllegalStateException("spanning tree cannot be reconnected");
+        linkEdge(best);
+    }
+
+    // Grows the halves of a and b one incidence at a time along tree edges and returns the index
+    // of the half that was completed first, which is the smaller one up to a constant factor
+    private int smallerHalf(int a, int b) {
+        if (mark > Integer.MAX_VALUE - 2) { // Start the marks over before they wrap around
+            Arrays.fill(seen, 0);
+            mark = 0;
+        }
+        mark += 2;
+        head[0] = head[1] = next[0] = next[1] = 0;
+        half[0][0] = a;
+        half[1][0] = b;
+        seen[a] = mark;
+        seen[b] = mark + 1;
+        queued[0] = queued[1] = 1;
+        for (int side = 0;; side ^= 1) {
+            if (head[side] == queued[side])
+                return side;
+            int v = half[side][head[side]];
+            if (next[side] == degree[v]) {
+                head[side]++;
+                next[side] = 0;
+                continue;
+            }
+            int e = incident[v][next[side]++];
+            int w = from[e] ^ to[e] ^ v;
+            if (state[e] == TREE && seen[w] != mark + side) {
+                seen[w] = mark + side;
+                half[side][queued[side]++] = w;
+            }
+        }
+    }
+
+    // Adds a live edge to the incidence lists of its endpoints
+    private void attach(int e) {
+        if (from[e] == to[e])
+            return;
+        slot[2 * e] = append(from[e], e);
+        slot[2 * e + 1] = append(to[e], e);
+    }
+
+    private int append(int v, int e) {
+        if (degree[v] == incident[v].length)
+            incident[v] = Arrays.copyOf(incident[v], degree[v] * 2);
+        incident[v][degree[v]] = e;
+        return degree[v]++;
+    }
+
+    // Removes an edge from the incidence lists by moving the last entry into its place
+    private void detach(int e) {
+        if (from[e] == to[e])
+            return;
+        remove(from[e], slot[2 * e]);
+        remove(to[e], slot[2 * e + 1]);
+    }
+
+    private void remove(int v, int position) {
+        int last = incident[v][--degree[v]];
+        incident[v][position] = last;
+        slot[2 * last + (from[last] == v ? 0 : 1)] = position;
+    }
+
+    private long edgeKey(int e) {
+        return ((long) cost[e] << 32) | e;
+    }
+
+    private int newEdge(int a, int b, int edgeCost) {
+        if (edgeCount == from.length)
+            grow();
+        int e = edgeCount++;
+        from[e] = a;
+        to[e] = b;
+        cost[e] = edgeCost;
+        initNode(n + 1 + e, edgeKey(e));
+        attach(e);
+        return e;
+    }
+
+    private void grow() {
+        int capacity = from.length * 2, nodes = n + 1 + capacity;
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        cost = Arrays.copyOf(cost, capacity);
+        state = Arrays.copyOf(state, capacity);
+        slot = Arrays.copyOf(slot, 2 * capacity);
+        left = Arrays.copyOf(left, nodes);
+        right = Arrays.copyOf(right, nodes);
+        up = Arrays.copyOf(up, nodes);
+        flipped = Arrays.copyOf(flipped, nodes);
+        key = Arrays.copyOf(key, nodes);
+        heaviest = Arrays.copyOf(heaviest, nodes);
+        stack = new int[nodes];
+    }
+
+    private void initNode(int x, long nodeKey) {
+        left[x] = right[x] = up[x] = -1;
+        flipped[x] = false;
+        key[x] = nodeKey;
+        heaviest[x] = x;
+    }
+
+    private void linkEdge(int e) {
+        int node = n + 1 + e;
+        makeRoot(node);
+        up[node] = from[e];
+        makeRoot(to[e]);
+        up[to[e]] = node;
+        state[e] = TREE;
+        totalCost += cost[e];
+    }
+
+    private void cutEdge(int e) {
+        int node = n + 1 + e;
+        cut(from[e], node);
+        cut(node, to[e]);
+        totalCost -= cost[e];
+    }
+
+    // Removes the tree edge between adjacent nodes a and b
+    private void cut(int a, int b) {
+        makeRoot(a);
+        access(b); // The splay tree of b is now exactly the path a - b, with a as its left child
+        left[b] = -1;
+        up[a] = -1;
+        update(b);
+    }
+
+    // Link-cut tree primitives
+
+    private boolean isSplayRoot(int x) {
+        int p = up[x];
+        return p == -1 || (left[p] != x && right[p] != x);
+    }
+
+    private void update(int x) {
+        int best = x;
+        if (left[x] != -1 && key[heaviest[left[x]]] > key[best])
+            best = heaviest[left[x]];
+        if (right[x] != -1 && key[heaviest[right[x]]] > key[best])
+            best = heaviest[right[x]];
+        heaviest[x] = best;
+    }
+
+    private void pushDown(int x) {
+        if (!flipped[x])
+            return;
+        int l = left[x];
+        left[x] = right[x];
+        right[x] = l;
+        if (left[x] != -1)
+            flipped[left[x]] ^= true;
+        if (right[x] != -1)
+            flipped[right[x]] ^= true;
+        flipped[x] = false;
+    }
+
+    private void rotate(int x) {
+        int p = up[x], g = up[p];
+        boolean pIsRoot = isSplayRoot(p);
+        if (left[p] == x) {
+            left[p] = right[x];
+            if (right[x] != -1)
+                up[right[x]] = p;
+            right[x] = p;
+        } else {
+            right[p] = left[x];
+            if (left[x] != -1)
+                up[left[x]] = p;
+            left[x] = p;
+        }
+        up[p] = x;
+        up[x] = g;
+        if (!pIsRoot) {
+            if (left[g] == p)
+                left[g] = x;
+            else
+                right[g] = x;
+        }
+        update(p);
+        update(x);
+    }
+
+    private void splay(int x) {
+        int depth = 0; // Push pending reversals down from the splay root first
+        stack[depth++] = x;
+        for (int y = x; !isSplayRoot(y); y = up[y])
+            stack[depth++] = up[y];
+        while (depth > 0)
+            pushDown(stack[--depth]);
+        while (!isSplayRoot(x)) {
+            int p = up[x];
+            if (!isSplayRoot(p))
+                rotate((left[p] == x) == (left[up[p]] == p) ? p : x); // Zig-zig or zig-zag
+            rotate(x);
+        }
+    }
+
+    // Makes the path from the tree root to x preferred and splays x to the top of it
+    private void access(int x) {
+        for (int child = -1, y = x; y != -1; child = y, y = up[y]) {
+            splay(y);
+            right[y] = child;
+            update(y);
+        }
+        splay(x);
+    }
+
+    private void makeRoot(int x) {
+        access(x);
+        flipped[x] ^= true;
+    }
+
+    private int findRoot(int x) {
+        access(x);
+        int root = x;
+        for (pushDown(root); left[root] != -1; pushDown(root))
+            root = left[root];
+        splay(root);
+        return root;
+    }
+}
@@ -2,291 +2,1033 @@
 // where different shapes in random colors descend from the top.
 // Players use the arrow keys to shift, rotate, and position the blocks on the board.
 // The game continues until a new block cannot be placed, which triggers a game-over condition.
+// The rules live in TetrisEngine, a headless core that keeps each board row as a bitmask so
+// collision checks are single ANDs and a step allocates nothing; the Swing panel only forwards
+// ticks and key presses to the engine and paints its state. Ticks come from a fixed-timestep
+// loop thread and are handed to the event thread, which alone touches the engine. Settled cells
+// are cached in an image that is redrawn only when the board changes, and a move of the falling
+// piece repaints just the area it left and entered.
+// TetrisReplay records a game as its seed plus one 4-bit code per tick or key press, with
+// periodic engine snapshots so playback can start from any tick without replaying the whole log.
+// The engine draws pieces from its own SplitMix64 generator, so a seed fixes the whole game;
+// TetrisBatchRunner uses that to score a TetrisPolicy over a range of seeds on a thread pool.
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
 
-public class Q3BTetrisGame extends JPanel implements ActionListener {
+public class Q3BTetrisGame extends JPanel {
     // Game board settings: width, height, block size, and color options
-    private static final int BOARD_WIDTH = 10; // Number of blocks horizontally
-    private static final int BOARD_HEIGHT = 20; // Number of blocks vertically
+    private static final int BOARD_WIDTH = TetrisEngine.WIDTH; // Number of blocks horizontally
+    private static final int BOARD_HEIGHT = TetrisEngine.HEIGHT; // Number of blocks vertically
     private static final int BLOCK_SIZE = 30; // Block dimension in pixels
     private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW, Color.ORANGE }; // Possible block colors
+    private static final Font GAME_OVER_FONT = new Font("Arial", Font.BOLD, 36); // Font for the game over message
+    private static final long TICK_NANOS = 500_000_000L; // Game speed: one drop every 500 ms
+    private static final int MAX_CATCH_UP = 5; // Ticks posted at once before the loop gives up catching up
 
-    private Timer timer; // Timer to regulate game speed
-    private boolean isGameOver; // Flag to track if the game has ended
-    private int[][] board; // 2D array to represent the game board
-    private Block currentBlock; // The block currently falling on the board
-    private Queue<Block> blockQueue; // Queue holding upcoming blocks
+    private final TetrisEngine engine; // Game state and rules, only used on the event thread
+    private final TetrisReplay.Recorder recorder; // Logs every tick and key press, or null
+    private volatile boolean running = true; // Cleared when the game ends to stop the loop thread
+    private BufferedImage settled; // Settled cells as last drawn
+    private long settledVersion = -1; // Board version the image was drawn for
+    private final TimingStats frameTimes = new TimingStats(); // Time spent in paintComponent
+    private final TimingStats tickJitter = new TimingStats(); // Lateness of each tick against its schedule
 
     // Constructor to initialize the game setup
     public Q3BTetrisGame() {
+        this(null);
+    }
+
+    // Plays the game held by a recorder so that it is logged, or a fresh game when it is null
+    public Q3BTetrisGame(TetrisReplay.Recorder recorder) {
+        this.recorder = recorder;
         setPreferredSize(new Dimension(BOARD_WIDTH * BLOCK_SIZE, BOARD_HEIGHT * BLOCK_SIZE)); // Define panel size
         setBackground(Color.BLACK); // Set background to black
         setFocusable(true); // Make the panel focusable to capture key events
         addKeyListener(new KeyAdapter() { // Add listener for key events
             @Override
             public void keyPressed(KeyEvent e) {
-                if (!isGameOver) { // Only process inputs when the game is ongoing
-                    switch (e.getKeyCode()) {
-                        case KeyEvent.VK_LEFT:
-                            moveBlockLeft(); // Move block left
-                            break;
-                        case KeyEvent.VK_RIGHT:
-                            moveBlockRight(); // Move block right
-                            break;
-                        case KeyEvent.VK_DOWN:
-                            moveBlockDown(); // Move block downward
-                            break;
-                        case KeyEvent.VK_UP:
-                            rotateBlock(); // Rotate the block
-                            break;
-                    }
-                    repaint(); // Refresh the screen after input
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_LEFT:
+                        update(TetrisEngine.LEFT); // Move block left
+                        break;
+                    case KeyEvent.VK_RIGHT:
+                        update(TetrisEngine.RIGHT); // Move block right
+                        break;
+                    case KeyEvent.VK_DOWN:
+                        update(TetrisEngine.DOWN); // Move block downward
+                        break;
+                    case KeyEvent.VK_UP:
+                        update(TetrisEngine.ROTATE); // Rotate the block
+                        break;
                 }
             }
         });
-        board = new int[BOARD_HEIGHT][BOARD_WIDTH]; // Initialize the game board
-        blockQueue = new LinkedList<>(); // Set up the block queue
-        timer = new Timer(500, this); // Create a timer with 500ms interval
-        timer.start(); // Start the game timer
-        generateNewBlock(); // Generate the first block
-    }
-
-    // Method to generate a new falling block
-    private void generateNewBlock() {
-        Random random = new Random(); // Instantiate random generator
-        int shapeIndex = random.nextInt(COLORS.length); // Randomly select a color index
-        int[][] shape = getRandomShape(); // Get a random block shape
-        Block block = new Block(shape, COLORS[shapeIndex]); // Create the new block
-        blockQueue.add(block); // Add the new block to the queue
-        currentBlock = blockQueue.poll(); // Set the first block in the queue as the current block
-    }
-
-    // Method to retrieve a random shape for the block
-    private int[][] getRandomShape() {
-        int[][][] shapes = {
-                { { 1, 1, 1, 1 } }, // I-shape
-                { { 1, 1, 0 }, { 0, 1, 1 } }, // Z-shape
-                { { 0, 1, 1 }, { 1, 1, 0 } }, // S-shape
-                { { 1, 1, 1 }, { 0, 1, 0 } }, // T-shape
-                { { 1, 1 }, { 1, 1 } } // O-shape
-        };
-        Random random = new Random(); // Initialize random generator
-        return shapes[random.nextInt(shapes.length)]; // Return a randomly selected shape
-    }
-
-    // Called by the timer to update the game logic
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (!isGameOver) { // Only run if the game is not over
-            if (canMoveDown(currentBlock)) { // Check if block can move down
-                currentBlock.row++; // Move the block down by one row
-            } else {
-                placeBlock(currentBlock); // Place block on the board
-                checkCompletedRows(); // Clear completed rows if any
-                generateNewBlock(); // Generate a new block for the next turn
-                if (!canMoveDown(currentBlock)) { // Check if new block can be placed
-                    isGameOver = true; // End the game if the new block cannot be placed
+        engine = recorder != null ? recorder.engine() : new TetrisEngine(System.nanoTime()); // Set up the board and the first block
+        Thread loop = new Thread(this::runLoop, "tetris-loop"); // Start the game clock
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    // Time spent painting each frame
+    public TimingStats frameTimes() {
+        return frameTimes;
+    }
+
+    // How late each tick fired compared with its fixed schedule
+    public TimingStats tickJitter() {
+        return tickJitter;
+    }
+
+    // Fixed-timestep clock: tick n is due at start + n * TICK_NANOS however long the previous
+    // ticks took; ticks missed while the thread was stalled are posted together
+    private void runLoop() {
+        long next = System.nanoTime() + TICK_NANOS;
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
                 }
+                continue; // Re-check the clock in case the sleep ended early
             }
-            repaint(); // Refresh the display
+            tickJitter.add(-wait);
+            long due = -wait / TICK_NANOS + 1; // Ticks whose time has come
+            for (long i = 0; i < Math.min(due, MAX_CATCH_UP); i++)
+                SwingUtilities.invokeLater(() -> update(TetrisEngine.NONE));
+            next = due <= MAX_CATCH_UP ? next + due * TICK_NANOS : System.nanoTime() + TICK_NANOS;
         }
     }
 
-    // Check if the block can move down
-    private boolean canMoveDown(Block block) {
-        for (int row = 0; row < block.shape.length; row++) {
-            for (int col = 0; col < block.shape[row].length; col++) {
-                if (block.shape[row][col] != 0) { // Check occupied cells in block
-                    int newRow = block.row + row + 1; // Calculate new row for block movement
-                    int newCol = block.col + col; // Calculate new column for block movement
-                    if (newRow >= BOARD_HEIGHT || (newRow >= 0 && board[newRow][newCol] != 0)) { // Check for collision or out of bounds
-                        return false; // Cannot move down
-                    }
-                }
+    // Applies a tick (NONE) or a player action on the event thread and repaints what changed
+    private void update(int action) {
+        if (engine.isGameOver()) // Only run if the game is not over
+            return;
+        Rectangle dirty = pieceBounds(); // Area the piece leaves
+        long version = engine.boardVersion();
+        if (recorder != null) {
+            try {
+                recorder.record(action); // Same as below, plus the log entry
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        } else if (action == TetrisEngine.NONE) {
+            engine.tick(); // Drop the block, or settle it and bring in the next one
+        } else {
+            engine.apply(action);
+        }
+        if (engine.boardVersion() != version || engine.isGameOver()) {
+            running = !engine.isGameOver();
+            repaint(); // The board itself changed
+        } else {
+            dirty.add(pieceBounds()); // Plus the area it enters
+            repaint(dirty);
         }
-        return true; // Block can safely move down
     }
 
-    // Place the current block on the board
-    private void placeBlock(Block block) {
-        for (int row = 0; row < block.shape.length; row++) {
-            for (int col = 0; col < block.shape[row].length; col++) {
-                if (block.shape[row][col] != 0) { // Check for occupied block cells
-                    board[block.row + row][block.col + col] = block.colorIndex + 1; // Update the board with the block's color
+    // Pixel area covered by the falling piece
+    private Rectangle pieceBounds() {
+        return new Rectangle(engine.pieceCol() * BLOCK_SIZE, engine.pieceRow() * BLOCK_SIZE,
+                engine.pieceWidth() * BLOCK_SIZE, engine.pieceHeight() * BLOCK_SIZE);
+    }
+
+    // Paint the game board and display the blocks
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        super.paintComponent(g); // Call superclass to paint the background
+        // Render the game board from the cached image, redrawing it only after the board changed
+        if (settledVersion != engine.boardVersion())
+            drawSettled();
+        g.drawImage(settled, 0, 0, null);
+        // Render the current falling block
+        g.setColor(COLORS[engine.pieceColor()]); // Set the color for the current block
+        for (int row = 0; row < engine.pieceHeight(); row++) {
+            int mask = engine.pieceMask(row); // Occupied columns of this block row, relative to pieceCol()
+            for (int col = 0; mask >> col != 0; col++) {
+                if ((mask >> col & 1) != 0) { // Check if a cell in the block is occupied
+                    g.fillRect((engine.pieceCol() + col) * BLOCK_SIZE, (engine.pieceRow() + row) * BLOCK_SIZE,
+                            BLOCK_SIZE, BLOCK_SIZE); // Draw the block
                 }
             }
         }
+        // Display game over message if the game is over
+        if (engine.isGameOver()) {
+            g.setColor(Color.WHITE); // Set color for the game over message
+            g.setFont(GAME_OVER_FONT); // Set the font for the message
+            g.drawString("Game Over", 50, 300); // Display the message
+        }
+        frameTimes.add(System.nanoTime() - start);
     }
 
-    // Check and remove completed rows, shifting others down
-    private void checkCompletedRows() {
+    // Draws the background and settled cells into the cached image
+    private void drawSettled() {
+        if (settled == null)
+            settled = new BufferedImage(BOARD_WIDTH * BLOCK_SIZE, BOARD_HEIGHT * BLOCK_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = settled.createGraphics();
+        g.setColor(getBackground());
+        g.fillRect(0, 0, settled.getWidth(), settled.getHeight());
         for (int row = 0; row < BOARD_HEIGHT; row++) {
-            boolean isComplete = true; // Assume row is full
             for (int col = 0; col < BOARD_WIDTH; col++) {
-                if (board[row][col] == 0) { // If any cell is empty, the row is not full
-                    isComplete = false;
-                    break;
-                }
-            }
-            if (isComplete) { // If row is full
-                for (int r = row; r > 0; r--) { // Shift rows above the completed row down
-                    board[r] = board[r - 1];
+                int cell = engine.cell(row, col);
+                if (cell != 0) { // Check if a block is present at this position
+                    g.setColor(COLORS[cell - 1]); // Set the color for the block
+                    g.fillRect(col * BLOCK_SIZE, row * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE); // Draw the block
                 }
-                board[0] = new int[BOARD_WIDTH]; // Clear the top row
             }
         }
+        g.dispose();
+        settledVersion = engine.boardVersion();
     }
 
-    // Move the block left if possible
-    private void moveBlockLeft() {
-        if (canMoveLeft(currentBlock)) { // Check if block can move left
-            currentBlock.col--; // Move the block left
+    // Count, mean and maximum of a stream of durations; safe to update from any thread
+    public static final class TimingStats {
+        private long count, total, max; // Nanoseconds
+
+        synchronized void add(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        public synchronized long count() {
+            return count;
+        }
+
+        public synchronized double meanMillis() {
+            return count == 0 ? 0 : total / 1e6 / count;
+        }
+
+        public synchronized double maxMillis() {
+            return max / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d samples, mean %.3f ms, max %.3f ms", count, meanMillis(), maxMillis());
         }
     }
 
-    // Check if the block can move left
-    private boolean canMoveLeft(Block block) {
-        for (int row = 0; row < block.shape.length; row++) {
-            for (int col = 0; col < block.shape[row].length; col++) {
-                if (block.shape[row][col] != 0) { // Check occupied cells in the block
-                    int newRow = block.row + row; // Calculate new row
-                    int newCol = block.col + col - 1; // Calculate new column
-                    if (newCol < 0 || (newRow >= 0 && board[newRow][newCol] != 0)) { // Check if the new position is out of bounds or occupied
-                        return false; // Cannot move left
+    // Main method to initialize and start the game
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--bench")) { // Optional headless benchmark mode
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 100_000,
+                    args.length > 2 ? Integer.parseInt(args[2]) : TetrisEngine.HEIGHT);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) { // Score a simple policy over many seeds
+            int games = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            try {
+                TetrisBatchRunner.Result result = TetrisBatchRunner.run(TetrisBatchRunner::randomPolicy, 1, games,
+                        threads, 100_000);
+                System.out.println(result);
+                System.out.println("Same histograms on one thread: "
+                        + result.sameOutcomes(TetrisBatchRunner.run(TetrisBatchRunner::randomPolicy, 1, games, 1, 100_000)));
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--replay")) { // Inspect a recorded game headless
+            replay(Paths.get(args[1]), args.length > 2 ? Long.parseLong(args[2]) : -1);
+            return;
+        }
+        TetrisReplay.Recorder recorder = args.length > 1 && args[0].equals("--record") // Optionally log the game
+                ? new TetrisReplay.Recorder(Paths.get(args[1]), System.nanoTime(), TetrisEngine.HEIGHT,
+                        TetrisReplay.DEFAULT_BLOCK_TICKS)
+                : null;
+        JFrame frame = new JFrame("Tetris Game"); // Create the main game window
+        Q3BTetrisGame game = new Q3BTetrisGame(recorder); // Instantiate the game
+        frame.add(game); // Add the game panel to the window
+        frame.pack(); // Adjust the window size based on the panel
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Ensure the application closes on window close
+        frame.setLocationRelativeTo(null); // Center the window on the screen
+        frame.addWindowListener(new WindowAdapter() { // Report the timing metrics when the window closes
+            @Override
+            public void windowClosing(WindowEvent e) {
+                System.out.println("Frame time: " + game.frameTimes());
+                System.out.println("Tick jitter: " + game.tickJitter());
+                if (recorder != null) {
+                    try {
+                        recorder.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
                     }
                 }
             }
+        });
+        frame.setVisible(true); // Make the window visible
+    }
+
+    // Prints the state at a tick of a recorded game (the end by default), then replays the whole
+    // log and checks that it reproduces every stored snapshot
+    static void replay(Path file, long tick) throws IOException {
+        try (TetrisReplay.Player player = new TetrisReplay.Player(file)) {
+            TetrisEngine engine = player.seek(tick < 0 ? player.ticks() : tick);
+            System.out.printf("seed %d, %d ticks; at tick %d: %d pieces, %d lines, game over %b%n", player.seed(),
+                    player.ticks(), tick < 0 ? player.ticks() : tick, engine.piecesPlaced(), engine.linesCleared(),
+                    engine.isGameOver());
+            long start = System.nanoTime();
+            boolean matches = player.verify();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Playback matches every snapshot: %b (%.1f M ticks/s)%n", matches,
+                    player.ticks() / seconds / 1e6);
         }
-        return true; // Block can move left
     }
 
-    // Move the block right if possible
-    private void moveBlockRight() {
-        if (canMoveRight(currentBlock)) { // Check if block can move right
-            currentBlock.col++; // Move the block right
+    // Plays headless games with random inputs and reports the simulation rate
+    static void benchmark(int games, int height) {
+        long start = System.nanoTime(), steps = 0, lines = 0;
+        for (int game = 0; game < games; game++) {
+            TetrisEngine engine = new TetrisEngine(game, height);
+            TetrisPolicy policy = TetrisBatchRunner.randomPolicy(game);
+            while (!engine.isGameOver()) {
+                lines += engine.step(policy.act(engine));
+                steps++;
+            }
         }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d steps, %d lines in %.2f s: %.0f games/s, %.1f M steps/s%n", games, steps, lines,
+                seconds, games / seconds, steps / seconds / 1e6);
     }
+}
 
-    // Check if the block can move right
-    private boolean canMoveRight(Block block) {
-        for (int row = 0; row < block.shape.length; row++) {
-            for (int col = 0; col < block.shape[row].length; col++) {
-                if (block.shape[row][col] != 0) { // Check occupied cells in the block
-                    int newRow = block.row + row; // Calculate new row
-                    int newCol = block.col + col + 1; // Calculate new column
-                    if (newCol >= BOARD_WIDTH || (newRow >= 0 && board[newRow][newCol] != 0)) { // Check if the new position is out of bounds or occupied
-                        return false; // Cannot move right
-                    }
-                }
+// Headless Tetris rules on a WIDTH-column board of 4 to MAX_HEIGHT rows (HEIGHT by default).
+// Every board row is an int whose bit c is set when column c is filled, and the colors sit in a
+// flat byte array, so moving, rotating and settling a piece never allocates. Rows are stored as a
+// ring buffer: logical row 0 (the top) is at physical index head. A settled piece can only fill
+// its own rows, so clearing is a single compaction pass that either slides the stack above the
+// cleared rows down, or moves head up by the number of cleared rows and slides the rows below
+// them up instead, whichever moves fewer rows. No per-row fill counters are kept: the row
+// bitmask already answers "is this row full" with one compare. The shapes and their four
+// clockwise rotations are turned into per-row masks once when the class loads; a piece is then
+// just a shape, a rotation, a position and a color. Shapes and colors come from a SplitMix64
+// generator whose whole state is one long, so equal seeds give equal games on any thread.
+class TetrisEngine {
+    static final int WIDTH = 10, HEIGHT = 20; // Board size in cells
+    static final int MAX_HEIGHT = 10_000; // Tallest board the engine accepts
+    private static final int FULL_ROW = (1 << WIDTH) - 1;
+    private static final int STATE_HEADER = 4 * Integer.BYTES + 4 * Long.BYTES + 5; // Saved state minus the rows
+    static final int NONE = 0, LEFT = 1, RIGHT = 2, DOWN = 3, ROTATE = 4; // Player actions
+    static final int COLOR_COUNT = 5; // Colors a piece can be given
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // SplitMix64 state increment
+
+    // Base shapes, rotated clockwise into ROTATIONS on class load
+    private static final int[][][] SHAPES = {
+            { { 1, 1, 1, 1 } }, // I-shape
+            { { 1, 1, 0 }, { 0, 1, 1 } }, // Z-shape
+            { { 0, 1, 1 }, { 1, 1, 0 } }, // S-shape
+            { { 1, 1, 1 }, { 0, 1, 0 } }, // T-shape
+            { { 1, 1 }, { 1, 1 } } // O-shape
+    };
+    private static final int[][][] ROTATIONS = new int[SHAPES.length][4][]; // Row masks per shape and rotation
+    private static final int[][] WIDTHS = new int[SHAPES.length][4]; // Columns spanned per shape and rotation
+
+    static {
+        for (int s = 0; s < SHAPES.length; s++) {
+            int[][] shape = SHAPES[s];
+            for (int r = 0; r < 4; r++) {
+                int[] masks = new int[shape.length];
+                for (int row = 0; row < shape.length; row++)
+                    for (int col = 0; col < shape[row].length; col++)
+                        masks[row] |= shape[row][col] << col;
+                ROTATIONS[s][r] = masks;
+                WIDTHS[s][r] = shape[0].length;
+                shape = rotateClockwise(shape);
             }
         }
-        return true; // Block can move right
     }
 
-    // Move the block down one row
-    private void moveBlockDown() {
-        if (canMoveDown(currentBlock)) { // Check if block can move down
-            currentBlock.row++; // Move the block down
+    private long randomState; // SplitMix64 state for shapes and colors
+    private final int height; // Rows on the board
+    private final int[] rows; // Filled columns per physical row
+    private final byte[] colors; // Color index + 1 per cell, 0 when empty, by physical row
+    private int head; // Physical index of the top row
+    private int top; // Every row above this logical row is empty
+    private int shape, rotation, pieceRow, pieceCol, pieceColor; // The falling piece
+    private boolean gameOver;
+    private long linesCleared, piecesPlaced; // Totals since the game started
+    private long boardVersion; // Bumped whenever settled cells change
+
+    TetrisEngine(long seed) {
+        this(seed, HEIGHT);
+    }
+
+    TetrisEngine(long seed, int height) {
+        if (height < 4 || height > MAX_HEIGHT)
+            throw new IllegalArgumentException("height must be between 4 and " + MAX_HEIGHT + ": " + height);
+        this.height = height;
+        rows = new int[height];
+        colors = new byte[height * WIDTH];
+        top = height;
+        randomState = seed;
+        spawn();
+    }
+
+    // Moves or rotates the falling piece if the result fits; returns whether it changed
+    boolean apply(int action) {
+        if (gameOver)
+            return false;
+        switch (action) {
+            case LEFT:
+                return moveTo(rotation, pieceRow, pieceCol - 1);
+            case RIGHT:
+                return moveTo(rotation, pieceRow, pieceCol + 1);
+            case DOWN:
+                return moveTo(rotation, pieceRow + 1, pieceCol);
+            case ROTATE:
+                return moveTo((rotation + 1) & 3, pieceRow, pieceCol); // Stays unrotated when it would collide
+            default:
+                return false;
         }
     }
 
-    // Rotate the block 90 degrees clockwise
-    private void rotateBlock() {
-        currentBlock.rotate(); // Rotate the block
-        if (!canMoveDown(currentBlock)) { // Check if the block can move down after rotation
-            currentBlock.rotate(); // Rotate it back if it collides
-            currentBlock.rotate();
-            currentBlock.rotate();
+    // Advances the game by one timer tick and returns the number of rows it cleared
+    int tick() {
+        if (gameOver || moveTo(rotation, pieceRow + 1, pieceCol))
+            return 0;
+        int cleared = settle();
+        spawn();
+        return cleared;
+    }
+
+    // Applies an action and then a tick, the unit an automated player works in
+    int step(int action) {
+        apply(action);
+        return tick();
+    }
+
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    // Color index + 1 of a settled cell, or 0 when it is empty
+    int cell(int row, int col) {
+        return colors[physical(row) * WIDTH + col];
+    }
+
+    // Filled columns of a board row as a bitmask
+    int rowMask(int row) {
+        return rows[physical(row)];
+    }
+
+    int height() {
+        return height;
+    }
+
+    int pieceRow() {
+        return pieceRow;
+    }
+
+    int pieceCol() {
+        return pieceCol;
+    }
+
+    int pieceWidth() {
+        return WIDTHS[shape][rotation];
+    }
+
+    int pieceHeight() {
+        return ROTATIONS[shape][rotation].length;
+    }
+
+    // Occupied columns of one row of the falling piece, with bit 0 at pieceCol()
+    int pieceMask(int row) {
+        return ROTATIONS[shape][rotation][row];
+    }
+
+    int pieceColor() {
+        return pieceColor;
+    }
+
+    long linesCleared() {
+        return linesCleared;
+    }
+
+    long piecesPlaced() {
+        return piecesPlaced;
+    }
+
+    // Changes whenever a piece settles, so views can tell when to redraw the board
+    long boardVersion() {
+        return boardVersion;
+    }
+
+    // Current generator state; a new engine seeded with it draws the same pieces from here on
+    long randomState() {
+        return randomState;
+    }
+
+    private boolean moveTo(int newRotation, int newRow, int newCol) {
+        if (!fits(shape, newRotation, newRow, newCol))
+            return false;
+        rotation = newRotation;
+        pieceRow = newRow;
+        pieceCol = newCol;
+        return true;
+    }
+
+    // True when the piece lies inside the board without overlapping settled cells
+    private boolean fits(int s, int r, int row, int col) {
+        int[] masks = ROTATIONS[s][r];
+        if (col < 0 || col + WIDTHS[s][r] > WIDTH || row < 0 || row + masks.length > height)
+            return false;
+        for (int i = 0; i < masks.length; i++)
+            if ((rows[physical(row + i)] & masks[i] << col) != 0)
+                return false;
+        return true;
+    }
+
+    // Writes the piece into the board and clears the rows it completed
+    private int settle() {
+        int[] masks = ROTATIONS[shape][rotation];
+        int full = 0; // Bit i is set when piece row i completed its board row
+        for (int i = 0; i < masks.length; i++) {
+            int p = physical(pieceRow + i);
+            rows[p] |= masks[i] << pieceCol;
+            for (int col = 0; masks[i] >> col != 0; col++)
+                if ((masks[i] >> col & 1) != 0)
+                    colors[p * WIDTH + pieceCol + col] = (byte) (pieceColor + 1);
+            if (rows[p] == FULL_ROW)
+                full |= 1 << i;
+        }
+        piecesPlaced++;
+        boardVersion++;
+        top = Math.min(top, pieceRow);
+        if (full == 0)
+            return 0;
+        int cleared = Integer.bitCount(full);
+        int first = pieceRow, last = pieceRow + masks.length - 1; // Logical rows the piece touched
+        if (last - top < height - first) { // Slide the rows from top to last down over the cleared ones
+            int write = last;
+            for (int row = last; row >= top; row--)
+                if (row < first || (full >> (row - first) & 1) == 0)
+                    copyRow(physical(row), physical(write--));
+            for (; write >= top; write--)
+                clearRow(physical(write));
+        } else { // Slide the rows from first to the bottom up, then move head up by the cleared count
+            int passed = 0; // Cleared rows above the current one
+            for (int row = first; row < height; row++) {
+                if (row <= last && (full >> (row - first) & 1) != 0)
+                    passed++;
+                else if (passed > 0)
+                    copyRow(physical(row), physical(row - passed));
+            }
+            for (int row = height - cleared; row < height; row++)
+                clearRow(physical(row));
+            head = physical(height - cleared); // The vacated bottom rows become the new top rows
         }
+        top = Math.min(top + cleared, height);
+        linesCleared += cleared;
+        return cleared;
     }
 
-    // Paint the game board and display the blocks
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g); // Call superclass to paint the background
-        // Render the game board
-        for (int row = 0; row < BOARD_HEIGHT; row++) {
-            for (int col = 0; col < BOARD_WIDTH; col++) {
-                if (board[row][col] != 0) { // Check if a block is present at this position
-                    g.setColor(COLORS[board[row][col] - 1]); // Set the color for the block
-                    g.fillRect(col * BLOCK_SIZE, row * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE); // Draw the block
-                }
+    // Physical index of a logical row
+    private int physical(int row) {
+        int p = head + row;
+        return p >= height ? p - height : p;
+    }
+
+    private void copyRow(int from, int to) {
+        rows[to] = rows[from];
+        System.arraycopy(colors, from * WIDTH, colors, to * WIDTH, WIDTH);
+    }
+
+    private void clearRow(int p) {
+        rows[p] = 0;
+        Arrays.fill(colors, p * WIDTH, p * WIDTH + WIDTH, (byte) 0);
+    }
+
+    // Brings in a new piece at the top; the game ends when it cannot drop from there
+    private void spawn() {
+        pieceColor = nextInt(COLOR_COUNT);
+        shape = nextInt(SHAPES.length);
+        rotation = 0;
+        pieceRow = 0;
+        pieceCol = WIDTH / 2 - WIDTHS[shape][0] / 2;
+        gameOver = !fits(shape, rotation, pieceRow, pieceCol) || !fits(shape, rotation, pieceRow + 1, pieceCol);
+    }
+
+    // Bytes writeState needs at most for this board
+    int stateSize() {
+        return STATE_HEADER + height * (Short.BYTES + WIDTH);
+    }
+
+    // Writes the whole game state; only the rows from the top of the stack down are stored
+    void writeState(ByteBuffer out) {
+        out.putInt(height).putLong(randomState).putLong(linesCleared).putLong(piecesPlaced).putLong(boardVersion);
+        out.put((byte) shape).put((byte) rotation).putInt(pieceRow).putInt(pieceCol).put((byte) pieceColor);
+        out.put((byte) (gameOver ? 1 : 0)).put((byte) 0).putInt(top);
+        for (int row = top; row < height; row++) {
+            int p = physical(row);
+            out.putShort((short) rows[p]).put(colors, p * WIDTH, WIDTH);
+        }
+    }
+
+    // Rebuilds an engine from writeState output; it behaves exactly like the one that was saved
+    static TetrisEngine readState(ByteBuffer in) {
+        TetrisEngine engine = new TetrisEngine(0, in.getInt());
+        engine.randomState = in.getLong();
+        engine.linesCleared = in.getLong();
+        engine.piecesPlaced = in.getLong();
+        engine.boardVersion = in.getLong();
+        engine.shape = in.get();
+        engine.rotation = in.get();
+        engine.pieceRow = in.getInt();
+        engine.pieceCol = in.getInt();
+        engine.pieceColor = in.get();
+        engine.gameOver = in.get() != 0;
+        in.get(); // Reserved
+        engine.top = in.getInt();
+        for (int row = engine.top; row < engine.height; row++) {
+            engine.rows[row] = in.getShort() & FULL_ROW;
+            in.get(engine.colors, row * WIDTH, WIDTH);
+        }
+        return engine;
+    }
+
+    // True when both engines would write identical states
+    boolean sameState(TetrisEngine other) {
+        if (height != other.height)
+            return false;
+        ByteBuffer mine = ByteBuffer.allocate(stateSize()), theirs = ByteBuffer.allocate(other.stateSize());
+        writeState(mine);
+        other.writeState(theirs);
+        return mine.flip().equals(theirs.flip());
+    }
+
+    // Uniform value in [0, bound) from the top 32 bits of the next SplitMix64 output
+    private int nextInt(int bound) {
+        return (int) ((mix(randomState += GOLDEN_GAMMA) >>> 32) * bound >>> 32);
+    }
+
+    // SplitMix64 output function
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int[][] rotateClockwise(int[][] shape) {
+        int rows = shape.length; // Get the number of rows in the block
+        int cols = shape[0].length; // Get the number of columns in the block
+        int[][] rotated = new int[cols][rows]; // Create a new array for the rotated shape
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                rotated[j][rows - i - 1] = shape[i][j]; // Rotate the shape
             }
         }
-        // Render the current falling block
-        if (currentBlock != null) {
-            g.setColor(currentBlock.color); // Set the color for the current block
-            for (int row = 0; row < currentBlock.shape.length; row++) {
-                for (int col = 0; col < currentBlock.shape[row].length; col++) {
-                    if (currentBlock.shape[row][col] != 0) { // Check if a cell in the block is occupied
-                        g.fillRect((currentBlock.col + col) * BLOCK_SIZE, (currentBlock.row + row) * BLOCK_SIZE,
-                                BLOCK_SIZE, BLOCK_SIZE); // Draw the block
-                    }
-                }
+        return rotated;
+    }
+}
+
+// Decides the next action for a game in progress. A policy may keep state, since the batch
+// runner creates a fresh one for every game.
+interface TetrisPolicy {
+    // One of TetrisEngine.NONE, LEFT, RIGHT, DOWN or ROTATE; the engine then ticks once
+    int act(TetrisEngine engine);
+}
+
+// Plays one game per seed in a range across a fixed thread pool and gathers histograms of lines
+// cleared, pieces placed and steps survived. Workers claim seeds in small chunks from a shared
+// counter and fill private histograms that are merged at the end, so the result depends only on
+// the policy and the seed range, never on the thread count or scheduling.
+class TetrisBatchRunner {
+    private static final int CHUNK = 64; // Seeds claimed per grab from the shared counter
+
+    // Counts of values in power-of-two buckets: bucket 0 holds 0 and bucket b holds [2^(b-1), 2^b)
+    static final class Histogram {
+        private final long[] buckets = new long[64];
+        private long count, sum, max;
+
+        void add(long value) {
+            buckets[64 - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void merge(Histogram other) {
+            for (int b = 0; b < buckets.length; b++)
+                buckets[b] += other.buckets[b];
+            count += other.count;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        boolean sameAs(Histogram other) {
+            return Arrays.equals(buckets, other.buckets) && count == other.count && sum == other.sum && max == other.max;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("mean %.2f, max %d%n", mean(), max));
+            for (int b = 0; b < buckets.length; b++)
+                if (buckets[b] != 0)
+                    text.append(String.format("  %12s %d%n", b <= 1 ? String.valueOf(b) : (1L << (b - 1)) + "-" + ((1L << b) - 1), buckets[b]));
+            return text.toString();
+        }
+    }
+
+    // Aggregated outcome of a batch
+    static final class Result {
+        final Histogram lines = new Histogram(), pieces = new Histogram(), survival = new Histogram();
+        long unfinished; // Games cut off at the step limit
+        long elapsedNanos;
+        int threads;
+
+        void merge(Result other) {
+            lines.merge(other.lines);
+            pieces.merge(other.pieces);
+            survival.merge(other.survival);
+            unfinished += other.unfinished;
+        }
+
+        double gamesPerSecond() {
+            return survival.count() / (elapsedNanos / 1e9);
+        }
+
+        // Throughput divided by the cores that could actually run the workers
+        double gamesPerSecondPerCore() {
+            return gamesPerSecond() / Math.min(threads, Runtime.getRuntime().availableProcessors());
+        }
+
+        boolean sameOutcomes(Result other) {
+            return lines.sameAs(other.lines) && pieces.sameAs(other.pieces) && survival.sameAs(other.survival)
+                    && unfinished == other.unfinished;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games on %d threads in %.2f s: %.0f games/s, %.0f games/s per core, %d unfinished%n",
+                    survival.count(), threads, elapsedNanos / 1e9, gamesPerSecond(), gamesPerSecondPerCore(), unfinished)
+                    + "lines cleared: " + lines + "pieces placed: " + pieces + "steps survived: " + survival;
+        }
+    }
+
+    // Plays seeds firstSeed .. firstSeed + games - 1, each with policies.apply(seed), for at most
+    // maxSteps steps per game
+    static Result run(LongFunction<TetrisPolicy> policies, long firstSeed, int games, int threads, long maxSteps)
+            throws InterruptedException, ExecutionException {
+        long end = firstSeed + games;
+        AtomicLong nextSeed = new AtomicLong(firstSeed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        boolean finished = false;
+        try {
+            long start = System.nanoTime();
+            List<Future<Result>> parts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                parts.add(pool.submit(() -> {
+                    Result part = new Result();
+                    for (long first; !Thread.currentThread().isInterrupted() // Stopped by shutdownNow
+                            && (first = nextSeed.getAndAdd(CHUNK)) < end;)
+                        for (long seed = first; seed < Math.min(first + CHUNK, end); seed++)
+                            play(seed, policies.apply(seed), maxSteps, part);
+                    return part;
+                }));
             }
+            Result total = new Result();
+            for (Future<Result> part : parts)
+                total.merge(part.get());
+            total.elapsedNanos = System.nanoTime() - start;
+            total.threads = threads;
+            finished = true;
+            return total;
+        } finally { // The workers are not daemon threads, so a failed run must not leave them behind
+            if (finished)
+                pool.shutdown();
+            else
+                pool.shutdownNow();
         }
-        // Display game over message if the game is over
-        if (isGameOver) {
-            g.setColor(Color.WHITE); // Set color for the game over message
-            g.setFont(new Font("Arial", Font.BOLD, 36)); // Set the font for the message
-            g.drawString("Game Over", 50, 300); // Display the message
+    }
+
+    private static void play(long seed, TetrisPolicy policy, long maxSteps, Result into) {
+        TetrisEngine engine = new TetrisEngine(seed);
+        long steps = 0;
+        while (!engine.isGameOver() && steps < maxSteps) {
+            engine.step(policy.act(engine));
+            steps++;
         }
+        into.lines.add(engine.linesCleared());
+        into.pieces.add(engine.piecesPlaced());
+        into.survival.add(steps);
+        if (!engine.isGameOver())
+            into.unfinished++;
     }
 
-    // Main method to initialize and start the game
-    public static void main(String[] args) {
-        JFrame frame = new JFrame("Tetris Game"); // Create the main game window
-        Q3BTetrisGame game = new Q3BTetrisGame(); // Instantiate the game
-        frame.add(game); // Add the game panel to the window
-        frame.pack(); // Adjust the window size based on the panel
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Ensure the application closes on window close
-        frame.setLocationRelativeTo(null); // Center the window on the screen
-        frame.setVisible(true); // Make the window visible
+    // Baseline policy that presses random keys, driven by its own SplitMix64 stream
+    static TetrisPolicy randomPolicy(long seed) {
+        long[] state = { seed ^ 0x5DEECE66DL };
+        return engine -> (int) ((TetrisEngine.mix(state[0] += TetrisEngine.GOLDEN_GAMMA) >>> 32)
+                * (TetrisEngine.ROTATE + 1) >>> 32);
+    }
+}
+
+// Binary log of one game for exact playback. The engine is deterministic given its seed, so the
+// log holds the seed and the sequence of events: a 4-bit code per event, two per byte, where
+// TetrisEngine.NONE (0) is a tick and 1-4 are the player actions. Every blockTicks ticks a block
+// starts with a snapshot of the engine, and a footer lists the block offsets, so seeking to a tick
+// restores the nearest snapshot and replays at most one block of events. A last, empty block
+// holds the final state so a full playback can be checked to its end. All values are little
+// endian; the file is
+//   header: int MAGIC, int blockTicks, long seed, int height
+//   blocks: long startTick, int stateLength, state, int eventCount, (eventCount + 1) / 2 bytes
+//   footer: long offset per block, int blockCount, long ticks, long footerOffset, int MAGIC
+// The player maps the file in one piece, which limits it to 2 GB.
+class TetrisReplay {
+    static final int DEFAULT_BLOCK_TICKS = 4096; // Ticks between snapshots
+    private static final int MAGIC = 0x4C505254; // "TRPL"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES; // Footer after the offsets
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    // Plays a game and logs it; events are packed in memory and written one block at a time
+    static final class Recorder implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer state; // Scratch for block snapshots
+        private final TetrisEngine engine;
+        private final int blockTicks;
+        private byte[] events = new byte[1024]; // Packed codes of the current block
+        private int eventCount;
+        private long ticks, written; // Ticks recorded, bytes handed to out so far
+        private long[] offsets = new long[16]; // File offset of each block
+        private int blocks;
+
+        Recorder(Path file, long seed, int height, int blockTicks) throws IOException {
+            if (blockTicks < 1)
+                throw new IllegalArgumentException("blocks must hold at least one tick: " + blockTicks);
+            this.blockTicks = blockTicks;
+            engine = new TetrisEngine(seed, height);
+            state = ByteBuffer.allocate(engine.stateSize()).order(ByteOrder.LITTLE_ENDIAN);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out.putInt(MAGIC).putInt(blockTicks).putLong(seed).putInt(height);
+            written = HEADER_BYTES;
+            startBlock();
+        }
+
+        // The game being recorded; change it only through record()
+        TetrisEngine engine() {
+            return engine;
+        }
+
+        // Applies a tick (NONE) or a player action to the engine and logs it; returns the rows the
+        // tick cleared
+        int record(int action) throws IOException {
+            if (action < TetrisEngine.NONE || action > TetrisEngine.ROTATE)
+                throw new IllegalArgumentException("unknown action: " + action);
+            if (eventCount == events.length * 2)
+                events = Arrays.copyOf(events, events.length * 2);
+            events[eventCount >> 1] |= action << ((eventCount & 1) << 2);
+            eventCount++;
+            if (action != TetrisEngine.NONE) {
+                engine.apply(action);
+                return 0;
+            }
+            int cleared = engine.tick();
+            if (++ticks % blockTicks == 0) {
+                endBlock();
+                startBlock();
+            }
+            return cleared;
+        }
+
+        // Finishes the last block, adds an empty block holding the final state, and writes the footer
+        @Override
+        public void close() throws IOException {
+            try {
+                endBlock();
+                startBlock();
+                endBlock();
+                long footer = written;
+                for (int b = 0; b < blocks; b++)
+                    putLong(offsets[b]);
+                ensure(TRAILER_BYTES);
+                out.putInt(blocks).putLong(ticks).putLong(footer).putInt(MAGIC);
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void startBlock() throws IOException {
+            if (blocks == offsets.length)
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+            offsets[blocks++] = written;
+            state.clear();
+            engine.writeState(state);
+            state.flip();
+            ensure(Long.BYTES + Integer.BYTES);
+            out.putLong(ticks).putInt(state.remaining());
+            written += Long.BYTES + Integer.BYTES;
+            put(state);
+        }
+
+        private void endBlock() throws IOException {
+            ensure(Integer.BYTES);
+            out.putInt(eventCount);
+            written += Integer.BYTES;
+            put(ByteBuffer.wrap(events, 0, (eventCount + 1) / 2));
+            Arrays.fill(events, 0, (eventCount + 1) / 2, (byte) 0);
+            eventCount = 0;
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            out.putLong(value);
+            written += Long.BYTES;
+        }
+
+        // Copies bytes into the write buffer, flushing it whenever it fills up
+        private void put(ByteBuffer bytes) throws IOException {
+            written += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                ensure(1);
+                int n = Math.min(bytes.remaining(), out.remaining());
+                out.put(bytes.slice().limit(n));
+                bytes.position(bytes.position() + n);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (out.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            out.clear();
+        }
     }
 
-    // Inner class representing a Tetris block
-    static class Block {
-        int[][] shape; // Shape of the block in a 2D array
-        int row, col; // Position of the block on the board
-        Color color; // Color of the block
-        int colorIndex; // Index for the block color
+    // Reads a log written by Recorder and rebuilds the game at any tick
+    static final class Player implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer data; // The whole file
+        private final int blockTicks, height;
+        private final long seed, ticks;
+        private final long[] offsets;
+
+        Player(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < HEADER_BYTES + TRAILER_BYTES)
+                throw new IOException("not a replay log of a supported size: " + file);
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (data.getInt(0) != MAGIC || data.getInt((int) size - Integer.BYTES) != MAGIC)
+                throw new IOException("not a replay log, or it was not closed: " + file);
+            blockTicks = data.getInt(4);
+            seed = data.getLong(8);
+            height = data.getInt(16);
+            int trailer = (int) size - TRAILER_BYTES;
+            int blockCount = data.getInt(trailer);
+            ticks = data.getLong(trailer + Integer.BYTES);
+            int footer = (int) data.getLong(trailer + Integer.BYTES + Long.BYTES);
+            offsets = new long[blockCount];
+            for (int b = 0; b < blockCount; b++)
+                offsets[b] = data.getLong(footer + b * Long.BYTES);
+        }
+
+        long seed() {
+            return seed;
+        }
 
-        // Constructor to initialize the block
-        public Block(int[][] shape, Color color) {
-            this.shape = shape; // Set block shape
-            this.row = 0; // Set initial row position
-            this.col = BOARD_WIDTH / 2 - shape[0].length / 2; // Set initial column position
-            this.color = color; // Set block color
-            this.colorIndex = getColorIndex(color); // Find the color index
+        // Ticks in the whole game
+        long ticks() {
+            return ticks;
         }
 
-        // Get the index of the color in the COLORS array
-        private int getColorIndex(Color color) {
-            for (int i = 0; i < COLORS.length; i++) {
-                if (COLORS[i].equals(color)) { // Compare block color with color array
-                    return i; // Return index
+        // The game right after its tick-th tick (before any key presses that followed it)
+        TetrisEngine seek(long tick) {
+            if (tick < 0 || tick > ticks)
+                throw new IllegalArgumentException("tick must be between 0 and " + ticks + ": " + tick);
+            int block = (int) Math.min(tick / blockTicks, offsets.length - 1);
+            int at = (int) offsets[block];
+            long current = data.getLong(at);
+            TetrisEngine engine = TetrisEngine.readState(stateAt(at));
+            int events = eventsAt(at);
+            int count = data.getInt(events - Integer.BYTES);
+            for (int i = 0; i < count && current < tick; i++) {
+                int action = data.get(events + (i >> 1)) >> ((i & 1) << 2) & 0xF;
+                if (action == TetrisEngine.NONE) {
+                    engine.tick();
+                    current++;
+                } else {
+                    engine.apply(action);
                 }
             }
-            return -1; // Return -1 if not found
+            return engine;
         }
 
-        // Rotate the block by 90 degrees
-        public void rotate() {
-            int rows = shape.length; // Get the number of rows in the block
-            int cols = shape[0].length; // Get the number of columns in the block
-            int[][] rotated = new int[cols][rows]; // Create a new array for the rotated shape
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    rotated[j][rows - i - 1] = shape[i][j]; // Rotate the shape
+        // Replays the whole log from the seed alone and checks the state at every block start
+        // against its snapshot
+        boolean verify() {
+            TetrisEngine engine = new TetrisEngine(seed, height);
+            for (long offset : offsets) {
+                int at = (int) offset;
+                if (!engine.sameState(TetrisEngine.readState(stateAt(at))))
+                    return false;
+                int events = eventsAt(at);
+                int count = data.getInt(events - Integer.BYTES);
+                for (int i = 0; i < count; i++) {
+                    int action = data.get(events + (i >> 1)) >> ((i & 1) << 2) & 0xF;
+                    if (action == TetrisEngine.NONE)
+                        engine.tick();
+                    else
+                        engine.apply(action);
                 }
             }
-            shape = rotated; // Assign the rotated shape
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // Snapshot of the block at a file offset
+        private ByteBuffer stateAt(int at) {
+            int length = data.getInt(at + Long.BYTES);
+            return data.slice(at + Long.BYTES + Integer.BYTES, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Offset of the packed events of the block at a file offset
+        private int eventsAt(int at) {
+            return at + Long.BYTES + 2 * Integer.BYTES + data.getInt(at + Long.BYTES);
         }
     }
 }